@@ -0,0 +1,45 @@
+package adapters.in.http;
+
+import tools.bench.Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip of an 8 KiB route-style JSON body. {@code gzipPooled} reuses a
+ * deflater from {@link ResponseCompression}'s pool; {@code gzipFresh} is
+ * what a {@link GZIPOutputStream} per response costs, native setup included.
+ */
+public class CompressionBench {
+    private final ResponseCompression compression = new ResponseCompression(1024, ResponseCompression.DEFAULT_LEVEL);
+    private final byte[] body;
+
+    public CompressionBench() {
+        StringBuilder sb = new StringBuilder("{\"route\":\"Echo\",\"items\":[");
+        for (int i = 0; sb.length() < 8192; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\",\"ok\":true},");
+        }
+        body = sb.append("{}]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] gzipPooled() {
+        return compression.encode(ResponseCompression.Coding.GZIP, body);
+    }
+
+    @Benchmark
+    public byte[] gzipFresh() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(body);
+        }
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public ResponseCompression.Coding negotiate() {
+        return ResponseCompression.choose("gzip, deflate, br;q=0.9, *;q=0.1");
+    }
+}
@@ -0,0 +1,52 @@
+package adapters.in.http;
+
+import app.RouteRegistry;
+import tools.bench.Benchmark;
+
+import java.nio.file.Path;
+
+public class RoutingBench {
+    private final String segment = "longDemo";
+    private final String messy = "long-demo.v2";
+    private final RouteRegistry registry = RouteRegistry.scan(Path.of("build"));
+
+    @Benchmark
+    public String toPascal() {
+        return HttpServerAdapter.toPascal(segment);
+    }
+
+    @Benchmark
+    public String toPascalSanitized() {
+        return HttpServerAdapter.toPascal(messy);
+    }
+
+    @Benchmark
+    public String pageClassNested() {
+        return HttpServerAdapter.pageClass("/docs/getting-started/intro");
+    }
+
+    @Benchmark
+    public boolean registryHit() {
+        return registry.exists(HttpServerAdapter.apiClass("/api/longDemo"));
+    }
+
+    @Benchmark
+    public boolean registryMiss() {
+        return registry.exists(HttpServerAdapter.pageClass("/wp-login.php"));
+    }
+
+    @Benchmark
+    public Path resolveStaticIndex() {
+        return HttpServerAdapter.resolveStaticPath("/");
+    }
+
+    @Benchmark
+    public Path resolveStaticMissing() {
+        return HttpServerAdapter.resolveStaticPath("/css/missing.css");
+    }
+
+    @Benchmark
+    public Path resolveStaticTraversal() {
+        return HttpServerAdapter.resolveStaticPath("/../../etc/passwd");
+    }
+}
@@ -0,0 +1,54 @@
+package adapters.out.process;
+
+import ports.RouteExecutorPort;
+import ports.RouteExecutorPort.ExecResult;
+import tools.bench.Benchmark;
+
+import java.util.Set;
+
+/**
+ * Every {@link RouteExecutorPort} running {@code routes.api.Echo} end to end,
+ * body included. Process-per-call executors manage a few calls per
+ * iteration, so these use fewer iterations than the micro benchmarks.
+ */
+public class ExecutorBench implements AutoCloseable {
+    private static final String ROUTE = "routes.api.Echo";
+    private static final String QUERY = "from=bench&n=1";
+    private static final byte[] BODY = "{\"message\":\"hello\"}".getBytes();
+
+    private final JavaExecutor java = new JavaExecutor();
+    private final MakeExecutor make = new MakeExecutor();
+    private final WorkerPoolExecutor pool = new WorkerPoolExecutor(1, Integer.MAX_VALUE);
+    private final InProcessExecutor inProcess = new InProcessExecutor(Set.of(ROUTE), java);
+
+    @Benchmark(iterations = 3)
+    public ExecResult javaExecutor() {
+        return check(java.execOnce(ROUTE, QUERY, BODY));
+    }
+
+    @Benchmark(iterations = 3)
+    public ExecResult makeExecutor() {
+        return check(make.execOnce(ROUTE, QUERY, BODY));
+    }
+
+    @Benchmark
+    public ExecResult workerPoolExecutor() {
+        return check(pool.execOnce(ROUTE, QUERY, BODY));
+    }
+
+    @Benchmark
+    public ExecResult inProcessExecutor() {
+        return check(inProcess.execOnce(ROUTE, QUERY, BODY));
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    // A failing route would benchmark the error path; stop instead.
+    private static ExecResult check(ExecResult r) {
+        if (r.exit != 0) throw new IllegalStateException(ROUTE + " exited " + r.exit + ": " + r.stderr);
+        return r;
+    }
+}
@@ -0,0 +1,67 @@
+package app;
+
+import domain.Job;
+import tools.bench.Benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Journal appends against a scratch directory. {@code enqueueDurable} pays
+ * one fsync per call; {@code enqueueConcurrent64} has 64 threads waiting on
+ * durability at once, which group commit should turn into a few syncs per
+ * iteration rather than 64.
+ */
+public class JobJournalBench implements AutoCloseable {
+    private static final int CONCURRENT = 64;
+
+    private final Path dir;
+    private final JobJournal journal;
+    private final ExecutorService pool = Executors.newFixedThreadPool(CONCURRENT);
+    private final Job job = new Job("routes.api.Echo", "from=bench&n=1&__sid=bench", "bench",
+            "{\"message\":\"hello\"}".getBytes());
+
+    public JobJournalBench() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        journal = new JobJournal(dir);
+        journal.replay();
+        journal.start(new JobStore(60_000, 1000, dir, dir));
+    }
+
+    @Benchmark
+    public Job startedAsync() {
+        journal.started(job);
+        return job;
+    }
+
+    @Benchmark(iterations = 3)
+    public Job enqueueDurable() {
+        journal.enqueued(job);
+        return job;
+    }
+
+    @Benchmark(iterations = 3)
+    public int enqueueConcurrent64() throws Exception {
+        Future<?>[] done = new Future<?>[CONCURRENT];
+        for (int i = 0; i < CONCURRENT; i++) done[i] = pool.submit(() -> journal.enqueued(job));
+        for (Future<?> f : done) f.get();
+        return CONCURRENT;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        StringBuilder sb = new StringBuilder();
+        journal.writeMetrics(sb);
+        sb.toString().lines().filter(l -> l.startsWith("cgiplus_journal_")).forEach(l -> System.out.println("  " + l));
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package app;
+
+import tools.bench.Benchmark;
+
+import java.util.Map;
+
+public class QueryUtilBench {
+    private final String small = "name=longDemo&sid=demo-1&seconds=5";
+    private final String encoded = "q=hello%20world%21&tags=a%2Cb%2Cc&redirect=%2Fdocs%2Findex.html%3Fx%3D1&__sid=s%C3%A9ance";
+    private final String large;
+
+    public QueryUtilBench() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 64; i++) sb.append(i == 0 ? "" : "&").append("key").append(i).append("=value").append(i);
+        large = sb.toString();
+    }
+
+    @Benchmark
+    public Map<String, String> parseSmall() {
+        return QueryUtil.parse(small);
+    }
+
+    @Benchmark
+    public Map<String, String> parseEncoded() {
+        return QueryUtil.parse(encoded);
+    }
+
+    @Benchmark
+    public Map<String, String> parseLarge() {
+        return QueryUtil.parse(large);
+    }
+
+    @Benchmark
+    public QueryParams paramsParseLarge() {
+        return QueryParams.parse(large);
+    }
+
+    @Benchmark
+    public int paramsGetSmall() {
+        QueryParams p = QueryParams.parse(small);
+        return p.getInt("seconds", 0) + p.get("sid").length();
+    }
+
+    @Benchmark
+    public String paramsGetEncoded() {
+        return QueryParams.parse(encoded).get("redirect");
+    }
+}
@@ -0,0 +1,57 @@
+package org.json;
+
+import tools.bench.Benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JSONObjectBench {
+    private final JSONObject flat = new JSONObject();
+    private final JSONObject nested = new JSONObject();
+    private final String nestedText;
+
+    public JSONObjectBench() {
+        flat.put("route", "Echo").put("sid", "demo-1").put("ok", true).put("durationMs", 1234L);
+
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", i);
+            item.put("name", "item \"" + i + "\"\n");
+            item.put("price", i * 1.25);
+            item.put("tags", List.of("a", "b", "c"));
+            items.add(item);
+        }
+        JSONObject meta = new JSONObject().put("page", 1).put("total", 50).put("query", Map.of("q", "x", "sort", "name"));
+        nested.put("route", "Search").put("meta", meta).put("items", items);
+        nestedText = nested.toString();
+    }
+
+    @Benchmark
+    public String toStringFlat() {
+        return flat.toString();
+    }
+
+    @Benchmark
+    public String toStringNested() {
+        return nested.toString();
+    }
+
+    @Benchmark
+    public void writeToStreamNested() throws IOException {
+        nested.writeTo(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public int pullParseNested() throws IOException {
+        JSONReader r = new JSONReader(new StringReader(nestedText));
+        int tokens = 0;
+        while (r.next() != JSONReader.Token.END) tokens++;
+        return tokens;
+    }
+}
@@ -0,0 +1,188 @@
+package tools.bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Small stand-in for the JMH runner: warms each {@link Benchmark} method up,
+ * measures its throughput over fixed-time iterations and writes the results
+ * in JMH's JSON result format ({@code -rf json}), so runs can be diffed with
+ * {@code --compare} or loaded into JMH tooling.
+ *
+ * <pre>
+ * BenchRunner [-wi N] [-i N] [-r ms] [-rff file] [regex...]
+ * BenchRunner --compare base.json new.json [--threshold pct]
+ * </pre>
+ */
+public final class BenchRunner {
+    private static final String[] BENCHMARKS = {
+            "app.QueryUtilBench",
+            "app.JobJournalBench",
+            "org.json.JSONObjectBench",
+            "adapters.in.http.RoutingBench",
+            "adapters.in.http.CompressionBench",
+            "adapters.out.process.ExecutorBench",
+    };
+
+    // Results land here so the JIT has to compute them.
+    public static volatile Object sink;
+
+    private BenchRunner() {
+    }
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length > 0 && args[0].equals("--compare")) {
+            System.exit(compare(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        int warmups = 3, iterations = 5;
+        long iterationMs = 1000;
+        Path out = null;
+        List<Pattern> filters = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi" -> warmups = Integer.parseInt(value(args, ++i, "-wi"));
+                case "-i" -> iterations = Integer.parseInt(value(args, ++i, "-i"));
+                case "-r" -> iterationMs = Long.parseLong(value(args, ++i, "-r"));
+                case "-rff" -> out = Path.of(value(args, ++i, "-rff"));
+                default -> filters.add(Pattern.compile(args[i]));
+            }
+        }
+
+        List<String> results = new ArrayList<>();
+        for (String className : BENCHMARKS) {
+            Class<?> c = Class.forName(className);
+            List<Method> methods = new ArrayList<>();
+            for (Method m : c.getMethods()) {
+                String name = className + "." + m.getName();
+                if (m.isAnnotationPresent(Benchmark.class) && !Modifier.isStatic(m.getModifiers())
+                        && m.getParameterCount() == 0 && matches(filters, name)) methods.add(m);
+            }
+            if (methods.isEmpty()) continue;
+            methods.sort(Comparator.comparing(Method::getName));
+            Object state = c.getConstructor().newInstance();
+            try {
+                for (Method m : methods) {
+                    int n = m.getAnnotation(Benchmark.class).iterations();
+                    results.add(run(state, m, warmups, n > 0 ? n : iterations, iterationMs));
+                }
+            } finally {
+                if (state instanceof AutoCloseable ac) ac.close();
+            }
+        }
+
+        String json = "[\n" + String.join(",\n", results) + "\n]\n";
+        if (out != null) {
+            if (out.getParent() != null) Files.createDirectories(out.getParent());
+            Files.writeString(out, json, StandardCharsets.UTF_8);
+            System.out.println("Results written to " + out);
+        } else {
+            System.out.print(json);
+        }
+    }
+
+    // ---- measuring ----
+    private static String run(Object state, Method m, int warmups, int iterations, long iterationMs) throws Throwable {
+        String name = m.getDeclaringClass().getName() + "." + m.getName();
+        MethodHandle h = MethodHandles.publicLookup().unreflect(m).bindTo(state)
+                .asType(java.lang.invoke.MethodType.methodType(Object.class));
+        for (int i = 0; i < warmups; i++) iteration(h, iterationMs);
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) scores[i] = iteration(h, iterationMs);
+
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double var = 0;
+        for (double s : scores) var += (s - mean) * (s - mean);
+        double error = iterations > 1 ? 3.29 * Math.sqrt(var / (iterations - 1)) / Math.sqrt(iterations) : Double.NaN;
+        System.out.printf(Locale.ROOT, "%-60s %16.3f +- %10.3f ops/s%n", name, mean, error);
+
+        StringBuilder raw = new StringBuilder();
+        for (double s : scores) raw.append(raw.length() == 0 ? "" : ",").append(num(s));
+        return "  {\"benchmark\":\"" + name + "\",\"mode\":\"thrpt\",\"threads\":1,\"forks\":0,"
+                + "\"warmupIterations\":" + warmups + ",\"warmupTime\":\"" + iterationMs + " ms\","
+                + "\"measurementIterations\":" + iterations + ",\"measurementTime\":\"" + iterationMs + " ms\","
+                + "\"primaryMetric\":{\"score\":" + num(mean) + ",\"scoreError\":" + num(error)
+                + ",\"scoreUnit\":\"ops/s\",\"rawData\":[[" + raw + "]]}}";
+    }
+
+    // Calls the benchmark until `iterationMs` passed, checking the clock every batch of calls.
+    private static double iteration(MethodHandle h, long iterationMs) throws Throwable {
+        long deadline = System.nanoTime() + iterationMs * 1_000_000L;
+        long ops = 0, batch = 1;
+        long t0 = System.nanoTime(), now;
+        do {
+            for (long i = 0; i < batch; i++) sink = (Object) h.invokeExact();
+            ops += batch;
+            now = System.nanoTime();
+            if (batch < 1 << 16) batch <<= 1;
+        } while (now < deadline);
+        return ops * 1e9 / (now - t0);
+    }
+
+    // ---- comparing ----
+    private static final Pattern RESULT = Pattern.compile(
+            "\"benchmark\"\\s*:\\s*\"([^\"]+)\".*?\"score\"\\s*:\\s*([-0-9.eE]+|NaN)", Pattern.DOTALL);
+
+    // Exit status 1 when any benchmark lost more than the threshold (default 10%) of its throughput.
+    private static int compare(String[] args) throws IOException {
+        if (args.length < 2) throw new IllegalArgumentException("--compare requires <base.json> <new.json>");
+        double threshold = 10;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--threshold")) threshold = Double.parseDouble(value(args, ++i, "--threshold"));
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        Map<String, Double> base = scores(Path.of(args[0]));
+        Map<String, Double> next = scores(Path.of(args[1]));
+        int regressions = 0;
+        for (Map.Entry<String, Double> e : next.entrySet()) {
+            Double before = base.get(e.getKey());
+            if (before == null || before == 0) {
+                System.out.printf(Locale.ROOT, "%-60s %16.3f ops/s  (new)%n", e.getKey(), e.getValue());
+                continue;
+            }
+            double pct = (e.getValue() - before) / before * 100;
+            boolean worse = pct < -threshold;
+            if (worse) regressions++;
+            System.out.printf(Locale.ROOT, "%-60s %16.3f -> %16.3f ops/s  %+7.1f%%%s%n",
+                    e.getKey(), before, e.getValue(), pct, worse ? "  REGRESSION" : "");
+        }
+        return regressions == 0 ? 0 : 1;
+    }
+
+    private static Map<String, Double> scores(Path file) throws IOException {
+        Map<String, Double> m = new LinkedHashMap<>();
+        Matcher mt = RESULT.matcher(Files.readString(file, StandardCharsets.UTF_8));
+        while (mt.find()) m.put(mt.group(1), Double.parseDouble(mt.group(2)));
+        return m;
+    }
+
+    // ---- helpers ----
+    private static boolean matches(List<Pattern> filters, String name) {
+        if (filters.isEmpty()) return true;
+        for (Pattern p : filters) if (p.matcher(name).find()) return true;
+        return false;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " requires a value");
+        return args[i];
+    }
+
+    private static String num(double d) {
+        return Double.isNaN(d) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", d);
+    }
+}
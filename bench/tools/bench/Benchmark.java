@@ -0,0 +1,20 @@
+package tools.bench;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-arg method as a throughput benchmark, as JMH's
+ * {@code @Benchmark} does. A non-void result is kept alive by the runner so
+ * the JIT cannot drop the work. The declaring class needs a public no-arg
+ * constructor (the setup); if it is {@link AutoCloseable} it is closed after
+ * its benchmarks ran (the teardown).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Benchmark {
+    /** Overrides the runner's measurement iteration count, e.g. for slow end-to-end benchmarks. */
+    int iterations() default -1;
+}
@@ -0,0 +1,67 @@
+package adapters.in.http;
+
+import app.JobService;
+import app.JobStore;
+import app.ResponseCache;
+import app.RouteLimiter;
+import app.SingleFlight;
+import ports.RouteExecutorPort;
+import tools.check.Check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static tools.check.CheckRunner.require;
+
+/**
+ * Identical calls to a coalesced route share one run, and only that run
+ * holds a {@link RouteLimiter} slot: a burst larger than the route's limit
+ * must not turn the followers away with 503s.
+ */
+public class CoalescedLimitCheck implements AutoCloseable {
+    private static final int CALLERS = 8;
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final RouteExecutorPort slow = (className, query) -> {
+        runs.incrementAndGet();
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new RouteExecutorPort.ExecResult(0, "{}", "");
+    };
+    private final JobService jobs = new JobService(slow, new JobStore(60_000, 100),
+            new SingleFlight(Set.of("routes.api.Echo")));
+    private final HttpServerAdapter http = new HttpServerAdapter(jobs, new RouteLimiter(1, Map.of(), 50),
+            ResponseCache.disabled(), false);
+    private final ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+
+    @Check
+    public void burstBeyondLimitSharesOneSlot() throws Exception {
+        List<Future<StubExchange>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            calls.add(pool.submit(() -> {
+                StubExchange ex = new StubExchange("GET", "/api/echo?msg=same", new byte[0]);
+                http.handle(ex);
+                return ex;
+            }));
+        }
+        for (Future<StubExchange> f : calls) {
+            StubExchange ex = f.get();
+            require(ex.getResponseCode() == 200, "caller got " + ex.getResponseCode() + " " + ex.responseText());
+        }
+        require(runs.get() < CALLERS, runs.get() + " runs for " + CALLERS + " identical callers");
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,57 @@
+package adapters.in.http;
+
+import adapters.out.process.InProcessExecutor;
+import app.JobService;
+import app.ResponseCache;
+import app.RouteLimiter;
+import app.RouteRegistry;
+import domain.Job;
+import tools.check.Check;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static tools.check.CheckRunner.require;
+
+/**
+ * A buffering executor only hands stdout over once the route has exited.
+ * A job keeps that output whatever the exit; a sync call that failed answers
+ * 500 with stderr instead of committing the partial output as a 200.
+ */
+public class FailedRouteOutputCheck {
+    private static final Path ROUTES = Path.of("build/check");
+
+    private final InProcessExecutor executor = new InProcessExecutor(Set.of("routes.api.Failing"),
+            (className, query) -> { throw new IllegalStateException("not trusted: " + className); }, ROUTES);
+    private final JobService jobs = new JobService(executor);
+    private final HttpServerAdapter http = new HttpServerAdapter(jobs, RouteLimiter.unlimited(),
+            ResponseCache.disabled(), false, RouteRegistry.scan(ROUTES));
+
+    @Check
+    public void failedJobKeepsItsOutput() throws Exception {
+        StubExchange ex = new StubExchange("GET", "/api/job/start?name=failing", new byte[0]);
+        http.handle(ex);
+        require(ex.getResponseCode() == 200, "start: " + ex.getResponseCode() + " " + ex.responseText());
+        Matcher m = Pattern.compile("\"jobId\":\"([^\"]+)\"").matcher(ex.responseText());
+        require(m.find(), "no job id in " + ex.responseText());
+        Job j = jobs.get(m.group(1));
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!j.state.isFinal() && System.nanoTime() < deadline) Thread.sleep(10);
+        require(j.state.isFinal() && j.exit == 3, "job " + j.state + " exit " + j.exit);
+        String out = new String(Files.readAllBytes(j.stdoutPath), StandardCharsets.UTF_8);
+        require(out.equals("{\"partial\":true}\n"), "job output was '" + out + "'");
+    }
+
+    @Check
+    public void failedSyncCallIsA500() throws Exception {
+        StubExchange ex = new StubExchange("GET", "/api/failing", new byte[0]);
+        http.handle(ex);
+        require(ex.getResponseCode() == 500, "call: " + ex.getResponseCode() + " " + ex.responseText());
+        require(!ex.responseText().contains("partial"), "failed call leaked " + ex.responseText());
+    }
+}
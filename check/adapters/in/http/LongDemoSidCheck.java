@@ -0,0 +1,55 @@
+package adapters.in.http;
+
+import adapters.out.process.InProcessExecutor;
+import app.JobService;
+import domain.Job;
+import tools.check.Check;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static tools.check.CheckRunner.require;
+
+/**
+ * The real LongDemo route reads {@code __sid} with the first-wins
+ * {@link app.QueryParams#get}; a client {@code __sid} placed ahead of the
+ * host's must not change what it reports.
+ */
+public class LongDemoSidCheck {
+    private final InProcessExecutor executor = new InProcessExecutor(Set.of("routes.api.LongDemo"),
+            (className, query) -> { throw new IllegalStateException("not trusted: " + className); });
+    private final JobService jobs = new JobService(executor);
+    private final HttpServerAdapter http = new HttpServerAdapter(jobs);
+
+    @Check
+    public void jobReportsTheHostSid() throws Exception {
+        StubExchange ex = new StubExchange("GET", "/api/job/start?__sid=spoof&name=longDemo&seconds=0&sid=real", new byte[0]);
+        http.handle(ex);
+        require(ex.getResponseCode() == 200, "start: " + ex.getResponseCode() + " " + ex.responseText());
+        Job j = jobs.get(field(ex.responseText(), "jobId"));
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!j.state.isFinal() && System.nanoTime() < deadline) Thread.sleep(10);
+        require(j.state.isFinal(), "job still " + j.state);
+        String out = new String(Files.readAllBytes(j.stdoutPath), StandardCharsets.UTF_8);
+        require("real".equals(field(out, "sid")), "route reported " + out.trim());
+    }
+
+    @Check
+    public void syncCallSeesNoClientSid() throws Exception {
+        StubExchange ex = new StubExchange("GET", "/api/LongDemo?__sid=spoof&seconds=0", new byte[0]);
+        http.handle(ex);
+        require(ex.getResponseCode() == 200, "call: " + ex.getResponseCode() + " " + ex.responseText());
+        require("".equals(field(ex.responseText(), "sid")), "route reported " + ex.responseText().trim());
+    }
+
+    // ---- helpers ----
+    // A string field of a flat JSON object, or null.
+    private static String field(String json, String name) {
+        Matcher m = Pattern.compile("\"" + name + "\":\"([^\"]*)\"").matcher(json);
+        return m.find() ? m.group(1) : null;
+    }
+}
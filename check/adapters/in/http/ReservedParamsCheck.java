@@ -0,0 +1,81 @@
+package adapters.in.http;
+
+import app.JobService;
+import app.QueryParams;
+import ports.RouteExecutorPort;
+import tools.check.Check;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static tools.check.CheckRunner.require;
+
+/**
+ * {@code __post} and {@code __sid} are set by the host alone. A client that
+ * sends its own must not reach the route with them, whatever the method,
+ * body size or parameter order; the route sees exactly the host's values.
+ */
+public class ReservedParamsCheck {
+    private final LinkedBlockingQueue<String> queries = new LinkedBlockingQueue<>();
+    private final RouteExecutorPort recorder = (className, query) -> {
+        queries.add(query);
+        return new RouteExecutorPort.ExecResult(0, "{}", "");
+    };
+    private final HttpServerAdapter http = new HttpServerAdapter(new JobService(recorder));
+
+    @Check
+    public void clientQueryDropsReservedNames() {
+        require(HttpServerAdapter.clientQuery("__post=/etc/hostname&a=1").equals("a=1"), "plain __post kept");
+        require(HttpServerAdapter.clientQuery("a=1&%5F%5Fpost=x&b=2&__sid=s").equals("a=1&b=2"), "encoded __post kept");
+        require(HttpServerAdapter.clientQuery("a=__x&b").equals("a=__x&b"), "ordinary pairs changed");
+        require(HttpServerAdapter.clientQuery(null).isEmpty(), "null query");
+    }
+
+    @Check
+    public void syncGetNeverForwardsClientPost() throws Exception {
+        String q = run("GET", "/api/echo?__post=/etc/hostname&msg=hi", new byte[0]);
+        require(!QueryParams.parse(q).has("__post"), "route saw " + q);
+        require("hi".equals(QueryParams.parse(q).get("msg")), "msg lost: " + q);
+    }
+
+    @Check
+    public void smallPostNeverForwardsClientPost() throws Exception {
+        String q = run("POST", "/api/echo?__post=/etc/hostname", "x".getBytes());
+        require(!QueryParams.parse(q).has("__post"), "route saw " + q);
+    }
+
+    @Check
+    public void spooledPostForwardsOnlyTheHostFile() throws Exception {
+        byte[] big = new byte[(1 << 20) + 1];
+        Arrays.fill(big, (byte) 'a');
+        String q = run("POST", "/api/echo?__post=/etc/hostname", big);
+        List<String> posts = QueryParams.parse(q).all("__post");
+        require(posts.size() == 1 && posts.get(0).startsWith("build/post/"), "route saw " + q);
+    }
+
+    @Check
+    public void jobSidCannotBeSpoofed() throws Exception {
+        String q = run("GET", "/api/job/start?__sid=spoof&name=echo&sid=real&%5F%5Fpost=/etc/hostname", new byte[0]);
+        QueryParams qs = QueryParams.parse(q);
+        require(qs.all("__sid").equals(List.of("real")), "route saw " + q);
+        require(!qs.has("__post"), "route saw " + q);
+    }
+
+    @Check
+    public void pageRenderNeverForwardsClientPost() throws Exception {
+        String q = run("GET", "/hello?name=x&__post=/etc/hostname", new byte[0]);
+        require(!QueryParams.parse(q).has("__post"), "route saw " + q);
+    }
+
+    // ---- helpers ----
+    // The query the route was started with; async jobs are waited for.
+    private String run(String method, String uri, byte[] body) throws Exception {
+        StubExchange ex = new StubExchange(method, uri, body);
+        http.handle(ex);
+        String q = queries.poll(5, TimeUnit.SECONDS);
+        require(q != null, method + " " + uri + " ran no route (" + ex.getResponseCode() + " " + ex.responseText() + ")");
+        return q;
+    }
+}
@@ -0,0 +1,259 @@
+package adapters.out.cluster;
+
+import app.JobScheduler;
+import app.JobService;
+import app.JobStore;
+import app.SingleFlight;
+import domain.Job;
+import domain.JobState;
+import ports.CancelToken;
+import ports.RouteExecutorPort;
+import ports.SpillBuffer;
+import tools.check.Check;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static tools.check.CheckRunner.require;
+
+/**
+ * A coordinator and worker nodes on 127.0.0.1 over plain TCP. The
+ * coordinator has no local job workers, so every job runs on a node. Nodes
+ * that misbehave in ways a real one cannot be made to on demand (going
+ * silent, hanging up on every RUN) are {@link FakeNode}s speaking the
+ * protocol by hand. Coordinators are never stopped; each check leaves its
+ * daemon threads and loopback port behind.
+ */
+public class ClusterCheck implements AutoCloseable {
+    private static final byte[] SECRET = "check-secret".getBytes(StandardCharsets.UTF_8);
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private final RouteExecutorPort local = (className, query) -> {
+        throw new IllegalStateException("ran " + className + " on the coordinator");
+    };
+    private final JobService jobs = new JobService(local, new JobStore(60_000, 1000), new SingleFlight(Set.of()),
+            new JobScheduler(0, 100));
+    private final int port;
+    private final List<ClusterWorker> workers = new ArrayList<>();
+    private final List<FakeNode> fakes = new ArrayList<>();
+
+    public ClusterCheck() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0, 1, LOOPBACK)) {
+            port = probe.getLocalPort();
+        }
+        new ClusterCoordinator(jobs, LOOPBACK, port, SECRET).start();
+    }
+
+    @Check
+    public void lostNodeJobRerunsOnAnother() throws Exception {
+        Scripted a = new Scripted("a", true);
+        node(a, SECRET);
+        Job j = jobs.enqueue("routes.api.Echo", "", "s");
+        require(a.started.await(5, TimeUnit.SECONDS), "node a never started the job");
+
+        Scripted b = new Scripted("b", false);
+        ClusterWorker wa = workers.get(0);
+        node(b, SECRET);
+        await(() -> nodes() == 2, 5_000, "node b never joined");
+        wa.stop();
+
+        await(() -> j.state.isFinal(), 10_000, "job still " + j.state);
+        require(j.state == JobState.DONE && j.exit == 0, "job " + j.state + " exit " + j.exit);
+        require(out(j).equals("b start\nb done\n"), "job output was '" + out(j) + "'");
+    }
+
+    @Check
+    public void cancelReachesTheNode() throws Exception {
+        Scripted a = new Scripted("a", true);
+        node(a, SECRET);
+        Job j = jobs.enqueue("routes.api.Echo", "", "s");
+        require(a.started.await(5, TimeUnit.SECONDS), "node never started the job");
+        require(jobs.cancel(j.id), "cancel refused");
+        require(a.cancelled.await(5, TimeUnit.SECONDS), "the route on the node was never cancelled");
+        await(() -> j.state.isFinal(), 5_000, "job still " + j.state);
+        require(j.state == JobState.CANCELLED, "job " + j.state);
+    }
+
+    @Check
+    public void wrongSecretNeverJoins() throws Exception {
+        Scripted x = new Scripted("x", false);
+        node(x, "not-the-secret".getBytes(StandardCharsets.UTF_8));
+        Job j = jobs.enqueue("routes.api.Echo", "", "s");
+        Thread.sleep(1_500);
+        require(nodes() == 0 && x.started.getCount() == 1, "a node with the wrong secret joined");
+        require(j.state == JobState.QUEUED, "job " + j.state);
+
+        node(new Scripted("b", false), SECRET);
+        await(() -> j.state.isFinal(), 5_000, "job still " + j.state);
+        require(out(j).equals("b start\nb done\n"), "job output was '" + out(j) + "'");
+    }
+
+    @Check
+    public void silentNodeIsDroppedAndItsJobRerun() throws Exception {
+        FakeNode silent = fake(false);
+        Job j = jobs.enqueue("routes.api.Echo", "", "s");
+        require(silent.ran.await(5, TimeUnit.SECONDS), "the silent node was never sent the job");
+        node(new Scripted("b", false), SECRET);
+
+        await(() -> j.state.isFinal(), ClusterProtocol.DEAD_AFTER_MS + 5_000, "job still " + j.state);
+        require(j.state == JobState.DONE && j.exit == 0, "job " + j.state + " exit " + j.exit);
+        require(out(j).equals("b start\nb done\n"), "job output was '" + out(j) + "'");
+    }
+
+    @Check
+    public void jobGivenUpAfterMaxAttempts() throws Exception {
+        Job j = jobs.enqueue("routes.api.Echo", "", "s");
+        for (int i = 0; i < 3; i++) {
+            FakeNode f = fake(true);
+            require(f.ran.await(5, TimeUnit.SECONDS), "attempt " + (i + 1) + " never reached a node");
+        }
+        await(() -> j.state.isFinal(), 5_000, "job still " + j.state + " after 3 lost nodes");
+        require(j.exit == -1, "job exit " + j.exit);
+        String err = Files.readString(j.stderrPath);
+        require(err.contains("Lost node"), "job stderr was '" + err + "'");
+    }
+
+    @Override
+    public void close() {
+        for (ClusterWorker w : workers) w.stop();
+        for (FakeNode f : fakes) f.close();
+    }
+
+    // ---- helpers ----
+    private void node(Scripted exec, byte[] secret) {
+        ClusterWorker w = new ClusterWorker(exec, LOOPBACK.getHostAddress(), port, 1, exec.name, secret);
+        workers.add(w);
+        ClusterCoordinator.daemon(() -> {
+            try {
+                w.run();
+            } catch (InterruptedException ignored) {}
+        }, "check-node-" + exec.name);
+    }
+
+    private FakeNode fake(boolean hangUp) throws IOException {
+        FakeNode f = new FakeNode(hangUp);
+        fakes.add(f);
+        return f;
+    }
+
+    private int nodes() {
+        StringBuilder sb = new StringBuilder();
+        jobs.writeMetrics(sb);
+        for (String line : sb.toString().split("\n")) {
+            if (line.startsWith("cgiplus_cluster_nodes ")) return Integer.parseInt(line.substring(line.indexOf(' ') + 1));
+        }
+        return -1;
+    }
+
+    private static String out(Job j) throws IOException {
+        Path p = j.stdoutPath;
+        return Files.exists(p) ? Files.readString(p) : "";
+    }
+
+    private static void await(BooleanSupplier cond, long ms, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+        while (!cond.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError(message);
+            Thread.sleep(10);
+        }
+    }
+
+    // A node's executor: writes "<name> start", then finishes, or holds until the route is cancelled.
+    private static final class Scripted implements RouteExecutorPort {
+        final String name;
+        final boolean hold;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+
+        Scripted(String name, boolean hold) {
+            this.name = name;
+            this.hold = hold;
+        }
+
+        @Override
+        public ExecResult execOnce(String className, String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StreamResult execStreaming(String className, String query, byte[] stdin, OutputOpener stdout,
+                                          CancelToken cancel) throws IOException {
+            OutputStream os = stdout.open();
+            os.write((name + " start\n").getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            started.countDown();
+            if (hold) {
+                CountDownLatch stop = new CountDownLatch(1);
+                cancel.onCancel(stop::countDown);
+                try {
+                    stop.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                cancelled.countDown();
+                return new StreamResult(143, SpillBuffer.of("cancelled"));
+            }
+            os.write((name + " done\n").getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            return new StreamResult(0, SpillBuffer.of(""));
+        }
+    }
+
+    // Joins with the right secret, then on its first RUN either hangs up or never says another word.
+    private final class FakeNode {
+        final Socket socket = new Socket();
+        final CountDownLatch ran = new CountDownLatch(1);
+
+        FakeNode(boolean hangUp) throws IOException {
+            socket.connect(new InetSocketAddress(LOOPBACK, port));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            require(in.readByte() == ClusterProtocol.CHALLENGE, "no CHALLENGE");
+            byte[] nonce = new byte[ClusterProtocol.NONCE_BYTES];
+            in.readFully(nonce);
+            out.writeByte(ClusterProtocol.HELLO);
+            out.writeInt(ClusterProtocol.VERSION);
+            out.write(ClusterProtocol.proof(SECRET, nonce));
+            ClusterProtocol.writeString(out, "fake");
+            out.writeInt(1);
+            out.flush();
+            ClusterCoordinator.daemon(() -> {
+                try {
+                    while (true) {
+                        byte type = in.readByte();
+                        if (type == ClusterProtocol.CANCEL) in.readInt();
+                        if (type != ClusterProtocol.RUN) continue;
+                        in.readInt();
+                        ClusterProtocol.readString(in);
+                        ClusterProtocol.readString(in);
+                        ClusterProtocol.readBytes(in);
+                        ran.countDown();
+                        if (hangUp) close();
+                    }
+                } catch (IOException ignored) {} // closed
+            }, "check-fake-node");
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package app;
+
+import domain.Job;
+import domain.JobState;
+import tools.check.Check;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static tools.check.CheckRunner.require;
+
+/**
+ * Jobs that finish while a snapshot is being written must survive it: the
+ * snapshot deletes the segments holding their enqueue records, so whatever it
+ * leaves out is gone after the next replay. The store below finishes jobs
+ * from inside the compactor's own reads, the window a real finish can land in.
+ */
+public class JobJournalCompactCheck implements AutoCloseable {
+    private static final int JOBS = 40;
+
+    private final Path dir = Files.createTempDirectory("journal-check");
+
+    public JobJournalCompactCheck() throws IOException {
+    }
+
+    @Check
+    public void finishDuringFinishedRead() throws Exception {
+        compactWhileFinishing(true);
+    }
+
+    @Check
+    public void finishDuringActiveRead() throws Exception {
+        compactWhileFinishing(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    // ---- helpers ----
+    private void compactWhileFinishing(boolean duringFinished) throws Exception {
+        // First run: enqueue every job, then stop without a snapshot that knows them.
+        Set<String> ids = new HashSet<>();
+        JobJournal first = journal();
+        first.replay();
+        first.start(store());
+        awaitSnapshot(first);
+        for (int i = 0; i < JOBS; i++) {
+            Job j = new Job("routes.api.Echo", "n=" + i, "s");
+            ids.add(j.id);
+            first.enqueued(j);
+        }
+
+        // Restart: the startup snapshot races half the recovered jobs finishing.
+        JobJournal second = journal();
+        RacingStore racing = new RacingStore(second, duringFinished);
+        for (Job j : second.replay().pending) racing.add(j);
+        require(racing.activeCount() == JOBS, "replayed " + racing.activeCount() + " of " + JOBS);
+        second.start(racing);
+        awaitSnapshot(second);
+        require(racing.finishedCount() == JOBS / 2, "finished " + racing.finishedCount() + " during the snapshot");
+
+        JobJournal.Recovery r = journal().replay();
+        Set<String> seen = new HashSet<>();
+        int done = 0;
+        for (Job j : r.finished) {
+            seen.add(j.id);
+            if (j.state == JobState.DONE) done++;
+        }
+        for (Job j : r.pending) seen.add(j.id);
+        require(seen.equals(ids), (ids.size() - seen.size()) + " jobs lost by the snapshot");
+        require(done == JOBS / 2 && r.pending.size() == JOBS - JOBS / 2,
+                done + " finished and " + r.pending.size() + " pending after replay");
+    }
+
+    private JobJournal journal() {
+        return new JobJournal(dir, 64 << 10);
+    }
+
+    private JobStore store() {
+        return new JobStore(60_000, 10_000, dir, dir);
+    }
+
+    private static void awaitSnapshot(JobJournal journal) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            StringBuilder sb = new StringBuilder();
+            journal.writeMetrics(sb);
+            if (sb.indexOf("cgiplus_journal_snapshots_total 1") >= 0) return;
+            Thread.sleep(5);
+        }
+        throw new AssertionError("no snapshot within 5 s");
+    }
+
+    // Finishes half the active jobs, as JobService would, right after the compactor reads one table.
+    private final class RacingStore extends JobStore {
+        private final JobJournal journal;
+        private final boolean duringFinished;
+        private boolean raced;
+
+        RacingStore(JobJournal journal, boolean duringFinished) {
+            super(60_000, 10_000, dir, dir);
+            this.journal = journal;
+            this.duringFinished = duringFinished;
+        }
+
+        @Override
+        public List<Job> activeJobs() {
+            List<Job> out = super.activeJobs();
+            if (!duringFinished) race();
+            return out;
+        }
+
+        @Override
+        public List<Job> finishedJobs() {
+            List<Job> out = super.finishedJobs();
+            if (duringFinished) race();
+            return out;
+        }
+
+        private void race() {
+            if (raced || !Thread.currentThread().getName().equals("job-journal-compact")) return;
+            raced = true;
+            List<Job> active = new ArrayList<>(super.activeJobs());
+            active.sort(Comparator.comparingLong(j -> j.queuedMs));
+            for (Job j : active.subList(0, JOBS / 2)) {
+                j.state = JobState.DONE;
+                j.exit = 0;
+                j.endMs = System.currentTimeMillis();
+                finish(j);
+                journal.finished(j);
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package routes.api;
+
+/** A route for checks: prints a partial result, then fails with exit 3. */
+public class Failing {
+    public static void main(String[] args) {
+        System.out.println("{\"partial\":true}");
+        System.exit(3);
+    }
+}
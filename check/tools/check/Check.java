@@ -0,0 +1,17 @@
+package tools.check;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-arg method as a regression check. It passes by returning
+ * and fails by throwing. Each check gets a fresh instance of its class, built
+ * with the public no-arg constructor, and the instance is closed afterwards
+ * if it is {@link AutoCloseable}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Check {
+}
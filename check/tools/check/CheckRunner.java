@@ -0,0 +1,85 @@
+package tools.check;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the {@link Check} methods of the classes in {@link #CHECKS} and exits
+ * non-zero if any of them threw. Like the benchmarks, checks live in the
+ * package of the code they cover and need no dependencies.
+ *
+ * <pre>
+ * CheckRunner [regex...]
+ * </pre>
+ */
+public final class CheckRunner {
+    private static final String[] CHECKS = {
+            "adapters.in.http.CoalescedLimitCheck",
+            "adapters.in.http.FailedRouteOutputCheck",
+            "adapters.in.http.LongDemoSidCheck",
+            "adapters.in.http.ReservedParamsCheck",
+            "adapters.out.cluster.ClusterCheck",
+            "app.JobJournalCompactCheck",
+    };
+
+    private CheckRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Pattern> filters = new ArrayList<>();
+        for (String a : args) filters.add(Pattern.compile(a));
+
+        int passed = 0, failed = 0;
+        for (String className : CHECKS) {
+            Class<?> c = Class.forName(className);
+            List<Method> methods = new ArrayList<>();
+            for (Method m : c.getMethods()) {
+                if (m.isAnnotationPresent(Check.class) && !Modifier.isStatic(m.getModifiers())
+                        && m.getParameterCount() == 0 && matches(filters, className + "." + m.getName())) methods.add(m);
+            }
+            methods.sort(Comparator.comparing(Method::getName));
+            for (Method m : methods) {
+                String name = className + "." + m.getName();
+                Throwable failure = null;
+                try {
+                    Object state = c.getConstructor().newInstance();
+                    try {
+                        m.invoke(state);
+                    } finally {
+                        if (state instanceof AutoCloseable ac) ac.close();
+                    }
+                } catch (InvocationTargetException e) {
+                    failure = e.getCause();
+                } catch (Exception e) {
+                    failure = e;
+                }
+                if (failure == null) {
+                    passed++;
+                    System.out.println("PASS " + name);
+                } else {
+                    failed++;
+                    System.out.println("FAIL " + name + ": " + failure);
+                    failure.printStackTrace(System.out);
+                }
+            }
+        }
+        System.out.println(passed + " passed, " + failed + " failed");
+        if (failed > 0) System.exit(1);
+    }
+
+    /** Throws with {@code message} unless {@code condition} holds; checks do not depend on {@code -ea}. */
+    public static void require(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    private static boolean matches(List<Pattern> filters, String name) {
+        if (filters.isEmpty()) return true;
+        for (Pattern p : filters) if (p.matcher(name).find()) return true;
+        return false;
+    }
+}
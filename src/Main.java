@@ -1,13 +1,219 @@
 package app;
 
 import adapters.in.http.HttpServerAdapter;
+import adapters.in.http.NioHttpServerAdapter;
+import adapters.in.http.ResponseCompression;
+import adapters.out.cluster.ClusterCoordinator;
+import adapters.out.cluster.ClusterWorker;
+import adapters.out.compiler.RouteCompiler;
+import adapters.out.process.InProcessExecutor;
+import adapters.out.process.JavaExecutor;
 import adapters.out.process.MakeExecutor;
+import adapters.out.process.WorkerPoolExecutor;
 import ports.RouteExecutorPort;
 
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
 public class Main {
     public static void main(String[] args) throws Exception {
-        RouteExecutorPort exec = new MakeExecutor();
-        JobService jobs = new JobService(exec);
-        new HttpServerAdapter(jobs).start(8080);
+        String executor = "java";
+        Set<String> trusted = Set.of("routes.api.Echo", "routes.pages.Hello");
+        boolean virtualThreads = Runtime.version().feature() >= 21; // --threads virtual on an older JVM warns and falls back
+        int defaultRouteLimit = 32;
+        long routeWaitMs = 250;
+        Map<String, Integer> routeLimits = new HashMap<>();
+        long jobRetentionSec = 3600;
+        int maxJobs = 10_000;
+        long cacheMb = 32;
+        int compressLevel = ResponseCompression.DEFAULT_LEVEL;
+        int compressMinBytes = ResponseCompression.DEFAULT_MIN_BYTES;
+        Set<String> coalesced = Set.of();
+        int jobWorkers = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        int maxQueued = 10_000;
+        long defaultJobTimeoutSec = 0;
+        Map<String, Long> jobTimeouts = new HashMap<>();
+        boolean journal = true;
+        boolean nio = false;
+        int eventLoops = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        int clusterPort = 0;
+        String clusterBind = "127.0.0.1";
+        Path clusterSecretFile = null;
+        String join = null;
+        int nodeSlots = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        String nodeName = InetAddress.getLocalHost().getHostName();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--executor" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--executor requires a value");
+                    executor = args[++i];
+                }
+                case "--trusted" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--trusted requires a value");
+                    trusted = Set.of(args[++i].split(","));
+                }
+                case "--threads" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--threads requires a value");
+                    String mode = args[++i];
+                    if (!mode.equals("virtual") && !mode.equals("platform")) {
+                        throw new IllegalArgumentException("Unknown thread mode: " + mode + " (virtual|platform)");
+                    }
+                    virtualThreads = mode.equals("virtual");
+                }
+                case "--http" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--http requires a value");
+                    String mode = args[++i];
+                    if (!mode.equals("jdk") && !mode.equals("nio")) {
+                        throw new IllegalArgumentException("Unknown HTTP adapter: " + mode + " (jdk|nio)");
+                    }
+                    nio = mode.equals("nio");
+                }
+                case "--event-loops" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--event-loops requires a value");
+                    eventLoops = Integer.parseInt(args[++i]);
+                }
+                case "--route-limit" -> {
+                    // <fqcn>=<n> for one route, or default=<n>; 0 disables the limit
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--route-limit requires <class>=<n>");
+                    String spec = args[++i];
+                    int eq = spec.indexOf('=');
+                    if (eq <= 0) throw new IllegalArgumentException("--route-limit requires <class>=<n>");
+                    int n = Integer.parseInt(spec.substring(eq + 1));
+                    if (spec.startsWith("default=")) defaultRouteLimit = n;
+                    else routeLimits.put(spec.substring(0, eq), n);
+                }
+                case "--route-wait-ms" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--route-wait-ms requires a value");
+                    routeWaitMs = Long.parseLong(args[++i]);
+                }
+                case "--job-retention-sec" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--job-retention-sec requires a value");
+                    jobRetentionSec = Long.parseLong(args[++i]);
+                }
+                case "--max-jobs" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--max-jobs requires a value");
+                    maxJobs = Integer.parseInt(args[++i]);
+                }
+                case "--cache-mb" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--cache-mb requires a value");
+                    cacheMb = Long.parseLong(args[++i]);
+                }
+                case "--compress-level" -> {
+                    // 1 (fastest) to 9 (smallest); 0 sends every response uncompressed
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--compress-level requires a value");
+                    compressLevel = Integer.parseInt(args[++i]);
+                }
+                case "--compress-min-bytes" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--compress-min-bytes requires a value");
+                    compressMinBytes = Integer.parseInt(args[++i]);
+                }
+                case "--coalesce" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--coalesce requires a value");
+                    coalesced = Set.of(args[++i].split(","));
+                }
+                case "--job-workers" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--job-workers requires a value");
+                    jobWorkers = Integer.parseInt(args[++i]);
+                }
+                case "--max-queued" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--max-queued requires a value");
+                    maxQueued = Integer.parseInt(args[++i]);
+                }
+                case "--job-timeout" -> {
+                    // <fqcn>=<sec> for one route, or default=<sec>; 0 means no limit
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--job-timeout requires <class>=<sec>");
+                    String spec = args[++i];
+                    int eq = spec.indexOf('=');
+                    if (eq <= 0) throw new IllegalArgumentException("--job-timeout requires <class>=<sec>");
+                    long sec = Long.parseLong(spec.substring(eq + 1));
+                    if (spec.startsWith("default=")) defaultJobTimeoutSec = sec;
+                    else jobTimeouts.put(spec.substring(0, eq), sec * 1000);
+                }
+                case "--journal" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--journal requires a value");
+                    String mode = args[++i];
+                    if (!mode.equals("on") && !mode.equals("off")) {
+                        throw new IllegalArgumentException("Unknown journal mode: " + mode + " (on|off)");
+                    }
+                    journal = mode.equals("on");
+                }
+                case "--cluster-port" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--cluster-port requires a value");
+                    clusterPort = Integer.parseInt(args[++i]);
+                }
+                case "--cluster-bind" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--cluster-bind requires a value");
+                    clusterBind = args[++i];
+                }
+                case "--cluster-secret-file" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--cluster-secret-file requires a value");
+                    clusterSecretFile = Path.of(args[++i]);
+                }
+                case "--join" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--join requires <host>:<port>");
+                    join = args[++i];
+                    if (join.lastIndexOf(':') <= 0) throw new IllegalArgumentException("--join requires <host>:<port>");
+                }
+                case "--node-slots" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--node-slots requires a value");
+                    nodeSlots = Integer.parseInt(args[++i]);
+                }
+                case "--node-name" -> {
+                    if (i + 1 >= args.length) throw new IllegalArgumentException("--node-name requires a value");
+                    nodeName = args[++i];
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        byte[] clusterSecret = null;
+        if (clusterPort > 0 || join != null) {
+            // Nodes are sent job queries and bodies, so neither end talks to a peer without the secret.
+            if (clusterSecretFile == null) throw new IllegalArgumentException("--cluster-port and --join require --cluster-secret-file");
+            clusterSecret = Files.readString(clusterSecretFile).strip().getBytes(StandardCharsets.UTF_8);
+            if (clusterSecret.length == 0) throw new IllegalArgumentException("Cluster secret file is empty: " + clusterSecretFile);
+        }
+
+        RouteCompiler compiler = new RouteCompiler();
+        RouteExecutorPort exec = switch (executor) {
+            case "java" -> new JavaExecutor();
+            case "make" -> new MakeExecutor();
+            case "pool" -> {
+                WorkerPoolExecutor pool = new WorkerPoolExecutor();
+                compiler.addListener(changed -> pool.recycle());
+                yield pool;
+            }
+            case "inprocess" -> new InProcessExecutor(trusted, new JavaExecutor());
+            default -> throw new IllegalArgumentException("Unknown executor: " + executor + " (java|make|pool|inprocess)");
+        };
+        compiler.start();
+        if (join != null) {
+            // Worker node only: no HTTP and no queue, just run what the coordinator sends.
+            int colon = join.lastIndexOf(':');
+            new ClusterWorker(exec, join.substring(0, colon), Integer.parseInt(join.substring(colon + 1)),
+                    nodeSlots, nodeName, clusterSecret).run();
+            return;
+        }
+        RouteRegistry routes = RouteRegistry.scan(Path.of("build"));
+        compiler.addListener(changed -> routes.refresh());
+
+        JobStore store = new JobStore(jobRetentionSec * 1000, maxJobs);
+        store.startSweeper();
+        JobService jobs = new JobService(exec, store, new SingleFlight(coalesced),
+                new JobScheduler(jobWorkers, maxQueued), new JobTimeouts(defaultJobTimeoutSec * 1000, jobTimeouts),
+                journal ? new JobJournal(Path.of("build/jobs/journal")) : JobJournal.disabled());
+        if (clusterPort > 0) new ClusterCoordinator(jobs, InetAddress.getByName(clusterBind), clusterPort, clusterSecret).start();
+        RouteLimiter limits = new RouteLimiter(defaultRouteLimit, routeLimits, routeWaitMs);
+        ResponseCache cache = new ResponseCache(cacheMb << 20,
+                ResponseCache.loadManifest(Path.of("src/routes/cache.properties")));
+        HttpServerAdapter http = new HttpServerAdapter(jobs, limits, cache,
+                new ResponseCompression(compressMinBytes, compressLevel), virtualThreads, routes);
+        if (nio) new NioHttpServerAdapter(http, eventLoops).start(8080);
+        else http.start(8080);
     }
 }
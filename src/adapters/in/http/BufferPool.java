@@ -0,0 +1,43 @@
+package adapters.in.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Direct buffers of {@link #BUFFER_BYTES} shared by the NIO adapter's event
+ * loops and request threads. At most {@code maxIdle} released buffers are
+ * kept; beyond that they are left to the GC.
+ */
+final class BufferPool {
+    static final int BUFFER_BYTES = 16 * 1024;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdle;
+
+    BufferPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /** A cleared buffer, in write mode. */
+    ByteBuffer acquire() {
+        ByteBuffer b = idle.poll();
+        if (b == null) return ByteBuffer.allocateDirect(BUFFER_BYTES);
+        idleCount.decrementAndGet();
+        return b.clear();
+    }
+
+    void release(ByteBuffer b) {
+        if (b == null) return;
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(b.clear());
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    int idle() {
+        return idleCount.get();
+    }
+}
@@ -1,35 +1,77 @@
 package adapters.in.http;
 
 import app.JobService;
+import app.Metrics;
+import app.QueryParams;
 import app.QueryUtil;
+import app.ResponseCache;
+import app.RouteLimiter;
+import app.RouteRegistry;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import domain.Job;
+import domain.JobPriority;
 import ports.RouteExecutorPort;
+import ports.SpillBuffer;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Locale;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class HttpServerAdapter {
 
+    private static final int BODY_SPOOL_BYTES = 1 << 20;
+    static final String RESERVED_PREFIX = "__";
+
     private final JobService jobs;
+    private final RouteLimiter limits;
+    private final ResponseCache cache;
+    private final ResponseCompression compression;
+    private final boolean virtualThreads;
+    private final RouteRegistry routes;
+    private final StaticAssets assets = new StaticAssets(Path.of("static"));
 
     public HttpServerAdapter(JobService jobs) {
+        this(jobs, RouteLimiter.unlimited(), ResponseCache.disabled(), false);
+    }
+
+    public HttpServerAdapter(JobService jobs, RouteLimiter limits, ResponseCache cache, boolean virtualThreads) {
+        this(jobs, limits, cache, virtualThreads, RouteRegistry.scan(Path.of("build")));
+    }
+
+    public HttpServerAdapter(JobService jobs, RouteLimiter limits, ResponseCache cache, boolean virtualThreads,
+                             RouteRegistry routes) {
+        this(jobs, limits, cache, ResponseCompression.disabled(), virtualThreads, routes);
+    }
+
+    public HttpServerAdapter(JobService jobs, RouteLimiter limits, ResponseCache cache,
+                             ResponseCompression compression, boolean virtualThreads, RouteRegistry routes) {
         this.jobs = jobs;
+        this.limits = limits;
+        this.cache = cache;
+        this.compression = compression;
+        this.virtualThreads = virtualThreads;
+        this.routes = routes;
+        jobs.addMetrics(compression::writeMetrics);
     }
 
     public void start(int port) throws IOException {
         HttpServer srv = HttpServer.create(new InetSocketAddress(port), 0);
-        srv.setExecutor(Executors.newCachedThreadPool());
+        srv.setExecutor(requestExecutor());
+        assets.start();
 
         srv.createContext("/", this::handleRoot);
         srv.createContext("/api", this::handleApi);
@@ -37,6 +79,17 @@ public class HttpServerAdapter {
         System.out.println("Listening on http://localhost:" + port);
     }
 
+    // Everything the JDK server's two contexts route, for transports without contexts (longest prefix wins there too).
+    void handle(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        if (path != null && path.startsWith("/api")) handleApi(ex);
+        else handleRoot(ex);
+    }
+
+    void startAssets() throws IOException {
+        assets.start();
+    }
+
     // ---- handlers ----
     private void handleRoot(HttpExchange ex) throws IOException {
         if (!ex.getRequestMethod().equalsIgnoreCase("GET")) {
@@ -47,18 +100,13 @@ public class HttpServerAdapter {
         String path = ex.getRequestURI().getPath();
         if (path == null || path.isBlank()) path = "/";
 
-        Path staticFile = resolveStaticPath(path);
-        if (staticFile != null && Files.isRegularFile(staticFile)) {
-            Headers h = ex.getResponseHeaders();
-            String contentType = Files.probeContentType(staticFile);
-            if (contentType == null || contentType.isBlank()) contentType = guessContentType(staticFile);
-            h.set("Content-Type", contentType);
-            long len = Files.size(staticFile);
-            ex.sendResponseHeaders(200, len);
-            try (OutputStream os = ex.getResponseBody();
-                 InputStream in = Files.newInputStream(staticFile)) {
-                in.transferTo(os);
-            }
+        StaticAssets.Asset asset = assets.lookup(path);
+        if (asset == null && (path.contains("..") || path.indexOf('\\') >= 0)) {
+            Path staticFile = resolveStaticPath(path);
+            if (staticFile != null) asset = assets.lookupFile(staticFile);
+        }
+        if (asset != null) {
+            sendAsset(ex, asset);
             return;
         }
 
@@ -70,56 +118,84 @@ public class HttpServerAdapter {
 
         if (path.equals("/api/job/start")) { handleJobStart(ex); return; }
         if (path.equals("/api/job/status")) { handleJobStatus(ex); return; }
-        if (path.equals("/api/job/output")) { handleJobOutput(ex); return; }
+        if (path.equals("/api/job/output")) { handleJobOutput(ex, false); return; }
+        if (path.equals("/api/job/stderr")) { handleJobOutput(ex, true); return; }
+        if (path.equals("/api/job/events")) { handleJobEvents(ex); return; }
+        if (path.equals("/api/job/cancel")) { handleJobCancel(ex); return; }
+        if (path.equals("/api/job/batch")) { JobBatchEndpoint.start(ex, jobs, routes); return; }
+        if (path.equals("/api/job/batch/status")) { JobBatchEndpoint.status(ex, jobs); return; }
+        if (path.equals("/api/job/batch/cancel")) { JobBatchEndpoint.cancel(ex, jobs); return; }
+        if (path.equals("/api/metrics")) { handleMetrics(ex); return; }
 
         // default sync route: /api/<Name> -> routes.api.<Name>
-        String[] parts = path.split("/");
-        String last = parts.length >= 3 ? parts[2] : "echo";
-        String className = "routes.api." + toPascal(last);
+        String className = apiClass(path);
+        if (!routes.exists(className)) {
+            sendNotFound(ex, Metrics.Mode.SYNC, "Unknown route " + className);
+            return;
+        }
 
-        // per-request POST file
-        Path postPath = persistBodyIfAny(ex);
-        String rawQ = ex.getRequestURI().getRawQuery();
-        if (rawQ == null) rawQ = "";
-        String augmentedQ = rawQ.isEmpty() ? "__post=" + QueryUtil.enc(postPath.toString())
-                : rawQ + "&__post=" + QueryUtil.enc(postPath.toString());
+        RequestBody body = readBody(ex);
+        String rawQ = clientQuery(ex.getRequestURI().getRawQuery());
+        String augmentedQ = body.augment(rawQ);
 
-        RouteExecutorPort.ExecResult r = jobs.execSync(className, augmentedQ);
-        if (r.exit != 0) {
-            send(ex, 500, "text/plain; charset=utf-8",
-                    "Route process failed (exit " + r.exit + ")\n" + r.stderr);
-        } else {
-            send(ex, 200, "application/json; charset=utf-8", r.stdout);
+        try {
+            sendRoute(ex, className, augmentedQ, body.bytes, "application/json; charset=utf-8", false);
+        } finally {
+            body.discard();
         }
     }
 
     private void handleJobStart(HttpExchange ex) throws IOException {
-        Map<String,String> qs = QueryUtil.parse(ex.getRequestURI().getRawQuery());
+        QueryParams qs = QueryParams.parse(ex.getRequestURI().getRawQuery());
         String name = qs.get("name");
         String fqcn = qs.get("class");
-        String sid  = qs.getOrDefault("sid", "");
+        String sid  = qs.get("sid", "");
+        JobPriority priority;
+        try {
+            priority = JobPriority.valueOf(qs.get("priority", "normal").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, "text/plain; charset=utf-8", "priority= must be high, normal or low");
+            return;
+        }
+        long timeoutSec;
+        try {
+            timeoutSec = Long.parseLong(qs.get("timeout", "0"));
+        } catch (NumberFormatException e) {
+            send(ex, 400, "text/plain; charset=utf-8", "timeout= must be a whole number of seconds");
+            return;
+        }
 
         if ((name == null || name.isBlank()) && (fqcn == null || fqcn.isBlank())) {
             send(ex, 400, "text/plain; charset=utf-8", "Missing name= or class=");
             return;
         }
         String className = (fqcn != null && !fqcn.isBlank()) ? fqcn : "routes.api." + toPascal(name);
+        if (!routes.exists(className)) {
+            sendNotFound(ex, Metrics.Mode.JOB, "Unknown route " + className);
+            return;
+        }
 
-        Path postPath = persistBodyIfAny(ex);
-        String rawQ = ex.getRequestURI().getRawQuery();
-        if (rawQ == null) rawQ = "";
-        String augmentedQ = rawQ
-                + (rawQ.isEmpty() ? "" : "&")
-                + "__post=" + QueryUtil.enc(postPath.toString())
-                + "&__sid=" + QueryUtil.enc(sid);
+        // A spooled body stays on disk until the job sweeper expires the job.
+        RequestBody body = readBody(ex);
+        String rawQ = clientQuery(ex.getRequestURI().getRawQuery());
+        String augmentedQ = body.augment(rawQ)
+                + (rawQ.isEmpty() && body.spooled == null ? "" : "&")
+                + "__sid=" + QueryUtil.enc(sid);
 
-        Job j = jobs.enqueue(className, augmentedQ, sid);
+        Job j;
+        try {
+            j = jobs.enqueue(className, augmentedQ, sid, body.bytes, priority, timeoutSec * 1000);
+        } catch (RejectedExecutionException e) {
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(jobs.scheduler().retryAfterSeconds()));
+            send(ex, 429, "text/plain; charset=utf-8", e.getMessage());
+            return;
+        }
         send(ex, 200, "application/json; charset=utf-8",
                 "{\"jobId\":\"" + j.id + "\",\"state\":\"" + j.state + "\",\"sid\":\"" + esc(sid) + "\"}");
     }
 
     private void handleJobStatus(HttpExchange ex) throws IOException {
-        Map<String,String> qs = QueryUtil.parse(ex.getRequestURI().getRawQuery());
+        QueryParams qs = QueryParams.parse(ex.getRequestURI().getRawQuery());
         String id = qs.get("id");
         if (id == null || id.isBlank()) { send(ex, 400, "text/plain; charset=utf-8", "Missing id"); return; }
         Job j = jobs.get(id);
@@ -127,6 +203,7 @@ public class HttpServerAdapter {
 
         long now = System.currentTimeMillis();
         long runtime = (j.startMs == 0 ? 0 : (j.endMs == 0 ? now - j.startMs : j.endMs - j.startMs));
+        long waited = (j.startMs == 0 ? now : j.startMs) - j.queuedMs;
         String json = "{"
                 + "\"jobId\":\""+j.id+"\","
                 + "\"sid\":\""+esc(j.sid)+"\","
@@ -135,76 +212,317 @@ public class HttpServerAdapter {
                 + "\"exit\":"+j.exit+","
                 + "\"startMs\":"+j.startMs+","
                 + "\"endMs\":"+j.endMs+","
-                + "\"runtimeMs\":"+runtime
+                + "\"runtimeMs\":"+runtime+","
+                + "\"priority\":\""+j.priority+"\","
+                + "\"timeoutMs\":"+j.timeoutMs+","
+                + "\"waitMs\":"+waited+","
+                + "\"sidQueued\":"+jobs.scheduler().queued(j.sid)+","
+                + "\"sidOldestWaitMs\":"+jobs.scheduler().oldestWaitMs(j.sid)
                 + "}";
         send(ex, 200, "application/json; charset=utf-8", json);
     }
 
-    private void handleJobOutput(HttpExchange ex) throws IOException {
-        Map<String,String> qs = QueryUtil.parse(ex.getRequestURI().getRawQuery());
+    private void handleJobOutput(HttpExchange ex, boolean stderr) throws IOException {
+        QueryParams qs = QueryParams.parse(ex.getRequestURI().getRawQuery());
         String id = qs.get("id");
         if (id == null || id.isBlank()) { send(ex, 400, "text/plain; charset=utf-8", "Missing id"); return; }
         Job j = jobs.get(id);
         if (j == null) { send(ex, 404, "text/plain; charset=utf-8", "No such job"); return; }
 
-        try {
-            String out = Files.readString(j.stdoutPath, StandardCharsets.UTF_8);
-            send(ex, 200, "text/plain; charset=utf-8", out);
-        } catch (IOException e) {
-            send(ex, 500, "text/plain; charset=utf-8", "Reading output failed: " + e);
-        }
+        OutputSlice.send(ex, stderr ? j.stderrPath : j.stdoutPath, compression);
+    }
+
+    private void handleJobCancel(HttpExchange ex) throws IOException {
+        QueryParams qs = QueryParams.parse(ex.getRequestURI().getRawQuery());
+        String id = qs.get("id");
+        if (id == null || id.isBlank()) { send(ex, 400, "text/plain; charset=utf-8", "Missing id"); return; }
+        Job j = jobs.get(id);
+        if (j == null) { send(ex, 404, "text/plain; charset=utf-8", "No such job"); return; }
+        boolean cancelled = jobs.cancel(id);
+        send(ex, cancelled ? 202 : 409, "application/json; charset=utf-8",
+                "{\"jobId\":\"" + j.id + "\",\"cancelled\":" + cancelled + ",\"state\":\"" + j.state + "\"}");
+    }
+
+    private void handleJobEvents(HttpExchange ex) throws IOException {
+        QueryParams qs = QueryParams.parse(ex.getRequestURI().getRawQuery());
+        String id = qs.get("id");
+        String sid = qs.get("sid");
+        if (id != null && !id.isBlank()) JobEventStream.job(ex, jobs, id);
+        else if (sid != null && !sid.isBlank()) JobEventStream.sid(ex, jobs, sid);
+        else send(ex, 400, "text/plain; charset=utf-8", "Missing id or sid");
+    }
+
+    private void handleMetrics(HttpExchange ex) throws IOException {
+        StringBuilder sb = new StringBuilder(8192);
+        jobs.writeMetrics(sb);
+        send(ex, 200, "text/plain; version=0.0.4; charset=utf-8", sb.toString());
     }
 
     // ---- helpers ----
-    private Path persistBodyIfAny(HttpExchange ex) throws IOException {
+    // One virtual thread per request when the JVM has them (21+), so requests parked in
+    // Process.waitFor cost no platform thread; otherwise the original cached pool.
+    ExecutorService requestExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not available on this JVM; using a cached thread pool");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    // Bodies up to BODY_SPOOL_BYTES stay in memory and reach the route on stdin; only larger
+    // ones are spooled to build/post and passed as __post=<file>. No body, no file.
+    private static final class RequestBody {
+        static final RequestBody NONE = new RequestBody(new byte[0], null);
+
+        final byte[] bytes;
+        final Path spooled;
+
+        RequestBody(byte[] bytes, Path spooled) {
+            this.bytes = bytes;
+            this.spooled = spooled;
+        }
+
+        String augment(String rawQ) {
+            if (spooled == null) return rawQ;
+            return rawQ + (rawQ.isEmpty() ? "" : "&") + "__post=" + QueryUtil.enc(spooled.toString());
+        }
+
+        void discard() {
+            if (spooled == null) return;
+            try { Files.deleteIfExists(spooled); } catch (IOException ignored) {}
+        }
+    }
+
+    private RequestBody readBody(HttpExchange ex) throws IOException {
         String m = ex.getRequestMethod();
         boolean has = "POST".equalsIgnoreCase(m) || "PUT".equalsIgnoreCase(m) || "PATCH".equalsIgnoreCase(m);
+        if (!has) return RequestBody.NONE;
+        InputStream in = ex.getRequestBody();
+        byte[] head = in.readNBytes(BODY_SPOOL_BYTES + 1);
+        if (head.length <= BODY_SPOOL_BYTES) return new RequestBody(head, null);
+
         Path postPath = Path.of("build/post", UUID.randomUUID() + ".txt");
         Files.createDirectories(postPath.getParent());
-        if (has) try (OutputStream out = Files.newOutputStream(postPath)) { ex.getRequestBody().transferTo(out); }
-        else Files.writeString(postPath, "", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        return postPath;
+        try (OutputStream out = Files.newOutputStream(postPath)) {
+            out.write(head);
+            in.transferTo(out);
+        }
+        return new RequestBody(new byte[0], postPath);
+    }
+
+    // The client's query without __-prefixed pairs. Those names belong to the host (__post, __sid), and
+    // routes read the first value of a name, so a client copy would win over the one the host appends.
+    static String clientQuery(String rawQ) {
+        return rawQ == null ? "" : QueryParams.parse(rawQ).without(RESERVED_PREFIX);
     }
 
-    private static String toPascal(String seg) {
+    // Keeps [A-Za-z0-9_] and upper-cases the first kept char; "" when nothing is left.
+    static String toPascal(String seg) {
         if (seg == null || seg.isEmpty()) return "Echo";
-        String s = seg.replaceAll("[^a-zA-Z0-9_]", "");
-        return s.substring(0, 1).toUpperCase(Locale.ROOT) + (s.length() > 1 ? s.substring(1) : "");
+        StringBuilder sb = new StringBuilder(seg.length());
+        appendPascal(sb, seg, 0, seg.length());
+        return sb.toString();
+    }
+
+    // /api/<seg>[/...] -> routes.api.<Seg>; a bare /api or /api/ means Echo.
+    static String apiClass(String path) {
+        int start = "/api/".length();
+        if (path.length() <= start || !path.startsWith("/api/")) return "routes.api.Echo";
+        int end = path.indexOf('/', start);
+        if (end < 0) end = path.length();
+        if (end == start) return "routes.api.Echo";
+        StringBuilder sb = new StringBuilder(11 + end - start).append("routes.api.");
+        appendPascal(sb, path, start, end);
+        return sb.toString();
+    }
+
+    // /docs/getting-started -> routes.pages.DocsGettingstarted; / -> routes.pages.Index.
+    static String pageClass(String path) {
+        StringBuilder sb = new StringBuilder(path.length() + 16).append("routes.pages.");
+        int prefix = sb.length();
+        int i = 0;
+        while (i < path.length()) {
+            int end = path.indexOf('/', i);
+            if (end < 0) end = path.length();
+            appendPascal(sb, path, i, end);
+            i = end + 1;
+        }
+        if (sb.length() == prefix) sb.append("Index");
+        return sb.toString();
+    }
+
+    private static void appendPascal(StringBuilder sb, String s, int from, int to) {
+        boolean first = true;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                sb.append(first ? (char) (c - ('a' - 'A')) : c);
+            } else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') {
+                sb.append(c);
+            } else {
+                continue;
+            }
+            first = false;
+        }
     }
 
     private static String esc(String s){ return s.replace("\\","\\\\").replace("\"","\\\""); }
 
     private void handlePageRender(HttpExchange ex, String path) throws IOException {
-        String[] parts = path.split("/");
-        StringBuilder cls = new StringBuilder("routes.pages.");
-        boolean has = false;
-        for (String part : parts) {
-            if (part == null || part.isBlank()) continue;
-            String sanitized = part.replaceAll("[^a-zA-Z0-9_]", "");
-            if (sanitized.isEmpty()) continue;
-            cls.append(toPascal(sanitized));
-            has = true;
-        }
-        if (!has) cls.append("Index");
-
-        String rawQ = ex.getRequestURI().getRawQuery();
-        if (rawQ == null) rawQ = "";
-
-        RouteExecutorPort.ExecResult r = jobs.execSync(cls.toString(), rawQ);
-        if (r.exit != 0) {
-            String stderr = r.stderr == null ? "" : r.stderr;
-            if (stderr.contains("Could not find or load main class")) {
-                send(ex, 404, "text/plain; charset=utf-8", "Page not found");
+        String className = pageClass(path);
+        if (!routes.exists(className)) {
+            sendNotFound(ex, Metrics.Mode.SYNC, "Page not found");
+            return;
+        }
+
+        String rawQ = clientQuery(ex.getRequestURI().getRawQuery());
+
+        sendRoute(ex, className, rawQ, null, "text/html; charset=utf-8", true);
+    }
+
+    // Unknown classes are turned away here, before a limiter slot, cache entry or process exists for them.
+    private void sendNotFound(HttpExchange ex, Metrics.Mode mode, String message) throws IOException {
+        jobs.metrics().notFound(mode);
+        send(ex, 404, "text/plain; charset=utf-8", message);
+    }
+
+    // Streams route stdout as a chunked 200 from its first byte on (once ResponseCompression has
+    // seen enough of it, when the client takes gzip or deflate). A route that fails before
+    // printing anything gets a 500 carrying its stderr (or a 404 for unknown pages); one that
+    // fails after output was committed can only be logged.
+    private void sendRoute(HttpExchange ex, String className, String q, byte[] body, String contentType,
+                           boolean page) throws IOException {
+        int ttl = cache.ttlSeconds(className);
+        boolean cacheable = ttl > 0 && "GET".equalsIgnoreCase(ex.getRequestMethod())
+                && (body == null || body.length == 0);
+        String cacheKey = cacheable ? ResponseCache.key(className, q) : null;
+        if (cacheable) {
+            ResponseCache.Entry hit = cache.get(cacheKey);
+            if (hit != null) { sendCached(ex, hit, contentType); return; }
+        }
+
+        boolean noBody = body == null || body.length == 0;
+        if (cacheable || (noBody && jobs.coalesces(className))) {
+            // Cached and coalesced calls share one buffered result, so they cannot stream. Only the
+            // call that runs the route takes a limiter slot; identical callers share it with the result.
+            RouteExecutorPort.ExecResult r = jobs.execSync(className, q, limits);
+            if (r == null) {
+                sendBusy(ex, className);
+                return;
+            }
+            if (r.exit != 0) {
+                sendFailure(ex, r.exit, SpillBuffer.of(r.stderr), page);
+                return;
+            }
+            byte[] bytes = r.stdout.getBytes(StandardCharsets.UTF_8);
+            long t0 = System.nanoTime();
+            if (cacheable) sendCached(ex, cache.put(cacheKey, bytes, ttl), contentType);
+            else compression.send(ex, 200, contentType, bytes);
+            jobs.metrics().record(className, Metrics.Mode.SYNC, Metrics.Phase.WRITE, System.nanoTime() - t0);
+            jobs.metrics().bytesOut(bytes.length);
+            return;
+        }
+
+        boolean admitted;
+        long waitStart = System.nanoTime();
+        try {
+            admitted = limits.tryAcquire(className);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            sendBusy(ex, className);
+            return;
+        }
+        try {
+            streamRoute(ex, className, q, body, contentType, page, System.nanoTime() - waitStart);
+        } finally {
+            limits.release(className);
+        }
+    }
+
+    private void sendBusy(HttpExchange ex, String className) throws IOException {
+        ex.getResponseHeaders().set("Retry-After", String.valueOf(limits.retryAfterSeconds()));
+        send(ex, 503, "text/plain; charset=utf-8", "Too many concurrent requests for " + className);
+    }
+
+    // Each encoding is its own representation with its own ETag; gzip is kept with the entry, deflate is rare.
+    private void sendCached(HttpExchange ex, ResponseCache.Entry e, String contentType) throws IOException {
+        Headers h = ex.getResponseHeaders();
+        ResponseCompression.Coding coding = compression.negotiate(ex, e.body.length);
+        byte[] body = e.body;
+        if (coding != null) {
+            byte[] encoded = coding == ResponseCompression.Coding.GZIP
+                    ? e.gzip(b -> compression.encode(ResponseCompression.Coding.GZIP, b))
+                    : compression.encode(coding, e.body);
+            if (encoded.length < body.length) body = encoded;
+            else coding = null;
+        }
+        String etag = coding == null ? e.etag : coding.etag(e.etag);
+        h.set("ETag", etag);
+        h.set("Cache-Control", "public, max-age=" + e.maxAgeSeconds());
+        if (ResponseCache.matches(ex.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        h.set("Content-Type", contentType);
+        if (coding != null) h.set("Content-Encoding", coding.token);
+        ex.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+    }
+
+    private void streamRoute(HttpExchange ex, String className, String q, byte[] body, String contentType,
+                             boolean page, long queueNanos) throws IOException {
+        OutputStream[] out = {null};
+        RouteExecutorPort.OutputOpener opener = new RouteExecutorPort.OutputOpener() {
+            @Override
+            public OutputStream open() throws IOException {
+                ex.getResponseHeaders().set("Content-Type", contentType);
+                return out[0] = compression.stream(ex, 200);
+            }
+
+            // Buffered output arrives after the exit is known; a failed route gets its 500 below.
+            @Override
+            public OutputStream openAfter(int exit) throws IOException {
+                return exit == 0 ? open() : null;
+            }
+        };
+        try (RouteExecutorPort.StreamResult r = jobs.execStreaming(className, q, body, opener, queueNanos)) {
+            if (out[0] != null) {
+                out[0].close();
+                if (r.exit != 0) {
+                    System.err.println(className + " exited " + r.exit + " after streaming output:\n" + r.stderr.head());
+                }
+                return;
+            }
+            if (r.exit == 0) {
+                send(ex, 200, contentType, "");
             } else {
-                send(ex, 500, "text/plain; charset=utf-8",
-                        "Route process failed (exit " + r.exit + ")\n" + stderr);
+                sendFailure(ex, r.exit, r.stderr, page);
             }
-        } else {
-            send(ex, 200, "text/html; charset=utf-8", r.stdout);
         }
     }
 
-    private Path resolveStaticPath(String path) {
+    private static void sendFailure(HttpExchange ex, int exit, SpillBuffer stderr, boolean page) throws IOException {
+        if (page && RouteExecutorPort.missingClass(stderr.head())) {
+            send(ex, 404, "text/plain; charset=utf-8", "Page not found");
+            return;
+        }
+        byte[] prefix = ("Route process failed (exit " + exit + ")\n").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(500, prefix.length + stderr.size());
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(prefix);
+            stderr.writeTo(os);
+        }
+    }
+
+    static Path resolveStaticPath(String path) {
         String clean = path;
         if (clean.endsWith("/")) clean = clean + "index.html";
         if ("/".equals(clean)) clean = "/index.html";
@@ -222,20 +540,62 @@ public class HttpServerAdapter {
         return null;
     }
 
-    private String guessContentType(Path p) {
-        String name = p.getFileName().toString().toLowerCase(Locale.ROOT);
-        if (name.endsWith(".html") || name.endsWith(".htm")) return "text/html; charset=utf-8";
-        if (name.endsWith(".css")) return "text/css; charset=utf-8";
-        if (name.endsWith(".js")) return "application/javascript; charset=utf-8";
-        if (name.endsWith(".json")) return "application/json; charset=utf-8";
-        if (name.endsWith(".png")) return "image/png";
-        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
-        if (name.endsWith(".gif")) return "image/gif";
-        return "application/octet-stream";
+    private static void sendAsset(HttpExchange ex, StaticAssets.Asset a) throws IOException {
+        Headers req = ex.getRequestHeaders();
+        Headers h = ex.getResponseHeaders();
+        boolean gzip = a.gzip != null && acceptsGzip(req.getFirst("Accept-Encoding"));
+        String etag = gzip ? a.gzipEtag : a.etag;
+        h.set("ETag", etag);
+        h.set("Last-Modified", a.lastModified);
+        if (a.gzip != null) h.set("Vary", "Accept-Encoding");
+
+        String inm = req.getFirst("If-None-Match");
+        if (inm != null ? ResponseCache.matches(inm, etag) : notModifiedSince(req.getFirst("If-Modified-Since"), a)) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+
+        h.set("Content-Type", a.contentType);
+        if (gzip) h.set("Content-Encoding", "gzip");
+        byte[] body = gzip ? a.gzip : a.bytes;
+        long len = body != null ? body.length : a.length;
+        ex.sendResponseHeaders(200, len == 0 ? -1 : len);
+        try (OutputStream os = ex.getResponseBody()) {
+            if (body != null) os.write(body);
+            else a.transferTo(Channels.newChannel(os));
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] kv = part.trim().split(";");
+            if (!kv[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < kv.length; i++) {
+                String param = kv[i].trim();
+                if (param.startsWith("q=")) return !param.substring(2).trim().matches("0(\\.0*)?");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean notModifiedSince(String ifModifiedSince, StaticAssets.Asset a) {
+        if (ifModifiedSince == null) return false;
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return a.lastModifiedSec <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    static void send(HttpExchange ex, int code, String contentType, String body) throws IOException {
+        send(ex, code, contentType, body.getBytes(StandardCharsets.UTF_8));
     }
 
-    private static void send(HttpExchange ex, int code, String contentType, String body) throws IOException {
-        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    static void send(HttpExchange ex, int code, String contentType, byte[] bytes) throws IOException {
         ex.getResponseHeaders().set("Content-Type", contentType);
         ex.sendResponseHeaders(code, bytes.length);
         try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
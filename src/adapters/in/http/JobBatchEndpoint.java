@@ -0,0 +1,207 @@
+package adapters.in.http;
+
+import app.JobBatch;
+import app.JobService;
+import app.Metrics;
+import app.QueryParams;
+import app.QueryUtil;
+import app.RouteRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import domain.Job;
+import domain.JobPriority;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@code /api/job/batch}: starts a list of jobs, or a DAG of them, from one
+ * JSON document and reports on the whole graph at once. The body is either
+ * an array of job objects or
+ * <pre>
+ * {"sid": "...", "priority": "low", "timeout": 60,
+ *  "jobs": [{"id": "a", "name": "longDemo", "query": "seconds=1"},
+ *           {"id": "b", "class": "routes.api.LongDemo", "query": "seconds=2"},
+ *           {"id": "r", "name": "echo", "after": ["a", "b"]}]}
+ * </pre>
+ * where each job may also carry {@code body}, {@code priority} and
+ * {@code timeout}. A job with {@code after} gets the stdout of those jobs as
+ * its body instead.
+ */
+final class JobBatchEndpoint {
+    private static final int MAX_DOCUMENT_BYTES = 1 << 20;
+
+    private JobBatchEndpoint() {}
+
+    static void start(HttpExchange ex, JobService jobs, RouteRegistry routes) throws IOException {
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            HttpServerAdapter.send(ex, 405, "text/plain; charset=utf-8", "POST a JSON batch document");
+            return;
+        }
+        byte[] doc = ex.getRequestBody().readNBytes(MAX_DOCUMENT_BYTES + 1);
+        if (doc.length > MAX_DOCUMENT_BYTES) {
+            HttpServerAdapter.send(ex, 413, "text/plain; charset=utf-8", "Batch document over " + MAX_DOCUMENT_BYTES + " bytes");
+            return;
+        }
+
+        String sid;
+        List<JobBatch.Spec> specs;
+        try (JSONReader r = new JSONReader(new ByteArrayInputStream(doc))) {
+            Object root = r.readValue();
+            if (r.next() != JSONReader.Token.END) throw new IllegalArgumentException("Trailing data after the document");
+            Map<?, ?> options = root instanceof Map<?, ?> m ? m : Map.of();
+            Object list = root instanceof Map<?, ?> m ? m.get("jobs") : root;
+            if (!(list instanceof List<?> items)) throw new IllegalArgumentException("Expected an array of jobs or {\"jobs\": [...]}");
+            sid = string(options, "sid", "");
+            JobPriority priority = priority(options, JobPriority.NORMAL);
+            long timeoutMs = seconds(options, 0) * 1000;
+            specs = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                if (!(items.get(i) instanceof Map<?, ?> job)) throw new IllegalArgumentException("Job " + i + " is not an object");
+                JobBatch.Spec s = spec(job, i, sid, priority, timeoutMs);
+                if (!routes.exists(s.className)) {
+                    jobs.metrics().notFound(Metrics.Mode.JOB);
+                    HttpServerAdapter.send(ex, 404, "text/plain; charset=utf-8", "Unknown route " + s.className + " for job " + s.id);
+                    return;
+                }
+                specs.add(s);
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            HttpServerAdapter.send(ex, 400, "text/plain; charset=utf-8", e.getMessage());
+            return;
+        }
+
+        JobBatch b;
+        try {
+            b = jobs.submitBatch(sid, specs);
+        } catch (IllegalArgumentException e) {
+            HttpServerAdapter.send(ex, 400, "text/plain; charset=utf-8", e.getMessage());
+            return;
+        } catch (RejectedExecutionException e) {
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(jobs.scheduler().retryAfterSeconds()));
+            HttpServerAdapter.send(ex, 429, "text/plain; charset=utf-8", e.getMessage());
+            return;
+        }
+        sendStatus(ex, jobs, b);
+    }
+
+    static void status(HttpExchange ex, JobService jobs) throws IOException {
+        JobBatch b = lookup(ex, jobs);
+        if (b != null) sendStatus(ex, jobs, b);
+    }
+
+    static void cancel(HttpExchange ex, JobService jobs) throws IOException {
+        JobBatch b = lookup(ex, jobs);
+        if (b == null) return;
+        boolean cancelled = jobs.cancelBatch(b.id);
+        HttpServerAdapter.send(ex, cancelled ? 202 : 409, "application/json; charset=utf-8",
+                new JSONObject().put("batchId", b.id).put("cancelled", cancelled).put("state", b.state()).toString());
+    }
+
+    // ---- helpers ----
+    private static JobBatch lookup(HttpExchange ex, JobService jobs) throws IOException {
+        String id = QueryParams.parse(ex.getRequestURI().getRawQuery()).get("id");
+        if (id == null || id.isBlank()) {
+            HttpServerAdapter.send(ex, 400, "text/plain; charset=utf-8", "Missing id");
+            return null;
+        }
+        JobBatch b = jobs.batch(id);
+        if (b == null) HttpServerAdapter.send(ex, 404, "text/plain; charset=utf-8", "No such batch");
+        return b;
+    }
+
+    // One document for the whole graph: batch state, per-state counts, then every node in submission order.
+    private static void sendStatus(HttpExchange ex, JobService jobs, JobBatch b) throws IOException {
+        Map<String, Integer> counts = new TreeMap<>();
+        List<Object> nodes = new ArrayList<>();
+        for (JobBatch.Node n : b.nodes()) {
+            Map<String, Object> o = new LinkedHashMap<>();
+            o.put("id", n.spec.id);
+            o.put("class", n.spec.className);
+            o.put("after", n.spec.after);
+            String jobId = n.jobId;
+            String state;
+            if (jobId == null) {
+                state = n.held == null ? "QUEUED" : n.held; // between leaving the batch and entering the queue
+                o.put("jobId", null);
+                o.put("state", state);
+                if (n.error != null) o.put("error", n.error);
+            } else {
+                Job j = jobs.get(jobId);
+                state = j == null ? "EXPIRED" : j.state.name();
+                o.put("jobId", jobId);
+                o.put("state", state);
+                if (j != null) {
+                    o.put("exit", j.exit);
+                    o.put("startMs", j.startMs);
+                    o.put("endMs", j.endMs);
+                }
+            }
+            counts.merge(state, 1, Integer::sum);
+            nodes.add(o);
+        }
+        JSONObject out = new JSONObject()
+                .put("batchId", b.id)
+                .put("sid", b.sid)
+                .put("state", b.state())
+                .put("total", nodes.size())
+                .put("remaining", b.remaining())
+                .put("createdMs", b.createdMs)
+                .put("endMs", b.endMs)
+                .put("counts", counts)
+                .put("nodes", nodes);
+        HttpServerAdapter.send(ex, 200, "application/json; charset=utf-8", out.toString());
+    }
+
+    private static JobBatch.Spec spec(Map<?, ?> job, int index, String sid, JobPriority priority, long timeoutMs) {
+        String id = string(job, "id", String.valueOf(index));
+        String name = string(job, "name", "");
+        String fqcn = string(job, "class", "");
+        if (name.isBlank() && fqcn.isBlank()) throw new IllegalArgumentException("Job " + id + " needs name or class");
+        String className = !fqcn.isBlank() ? fqcn : "routes.api." + HttpServerAdapter.toPascal(name);
+        String query = HttpServerAdapter.clientQuery(string(job, "query", ""));
+        query = query + (query.isEmpty() ? "" : "&") + "__sid=" + QueryUtil.enc(sid);
+        String body = string(job, "body", "");
+        List<String> after = new ArrayList<>();
+        Object a = job.get("after");
+        if (a instanceof List<?> l) {
+            for (Object o : l) after.add(String.valueOf(o));
+        } else if (a != null) {
+            after.add(String.valueOf(a));
+        }
+        return new JobBatch.Spec(id, className, query, body.getBytes(StandardCharsets.UTF_8),
+                priority(job, priority), seconds(job, timeoutMs / 1000) * 1000, after);
+    }
+
+    private static String string(Map<?, ?> m, String key, String def) {
+        Object v = m.get(key);
+        return v == null ? def : String.valueOf(v);
+    }
+
+    private static JobPriority priority(Map<?, ?> m, JobPriority def) {
+        Object v = m.get("priority");
+        if (v == null) return def;
+        try {
+            return JobPriority.valueOf(String.valueOf(v).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("priority must be high, normal or low");
+        }
+    }
+
+    private static long seconds(Map<?, ?> m, long def) {
+        Object v = m.get("timeout");
+        if (v == null) return def;
+        if (v instanceof Long l) return l;
+        throw new IllegalArgumentException("timeout must be a whole number of seconds");
+    }
+}
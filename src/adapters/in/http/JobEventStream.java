@@ -0,0 +1,196 @@
+package adapters.in.http;
+
+import app.JobService;
+import com.sun.net.httpserver.HttpExchange;
+import domain.Job;
+import domain.JobState;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@code text/event-stream} connection following a single job or every
+ * job of a sid. The connection thread sleeps until {@link app.JobEvents}
+ * signals a change, then sends the bytes appended to each job's stdout file
+ * since its last offset ({@code event: output}) followed by any state
+ * transition ({@code event: state}). A stream for one job ends once it reaches a final state; a
+ * sid stream stays open until the client leaves.
+ */
+final class JobEventStream {
+    private static final long HEARTBEAT_MS = 15_000;
+    private static final int CHUNK = 64 * 1024;
+    /** Finished ids a sid stream remembers; late notifications come right after the finish. */
+    static final int MAX_FINISHED = 1024;
+
+    private static final class Tracked {
+        Job job;
+        long offset;
+        JobState sent;
+
+        Tracked(Job job) {
+            this.job = job;
+        }
+    }
+
+    private final Map<String, Tracked> tracked = new LinkedHashMap<>();
+    private final Set<String> finished = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_FINISHED;
+        }
+    });
+    private final Queue<Job> pending = new ConcurrentLinkedQueue<>();
+    private final Semaphore wake = new Semaphore(0);
+    private final ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+    private final boolean single;
+
+    private JobEventStream(boolean single) {
+        this.single = single;
+    }
+
+    /** Streams one job; answers 404 when the id is unknown. */
+    static void job(HttpExchange ex, JobService jobs, String id) throws IOException {
+        JobEventStream s = new JobEventStream(true);
+        // Subscribe before the lookup so a transition in between is not lost.
+        Runnable unsubscribe = jobs.events().subscribeJob(id, s::signal);
+        try {
+            Job j = jobs.get(id);
+            if (j == null) {
+                HttpServerAdapter.send(ex, 404, "text/plain; charset=utf-8", "No such job");
+                return;
+            }
+            s.tracked.put(j.id, new Tracked(j));
+            s.run(ex);
+        } finally {
+            unsubscribe.run();
+        }
+    }
+
+    /** Streams every job of {@code sid} that is active now or starts later. */
+    static void sid(HttpExchange ex, JobService jobs, String sid) throws IOException {
+        JobEventStream s = new JobEventStream(false);
+        Runnable unsubscribe = jobs.events().subscribeSid(sid, s::signal);
+        try {
+            for (Job j : jobs.activeJobs(sid)) s.tracked.put(j.id, new Tracked(j));
+            s.run(ex);
+        } finally {
+            unsubscribe.run();
+        }
+    }
+
+    private void signal(Job j) {
+        pending.add(j);
+        wake.release();
+    }
+
+    private void run(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        try (OutputStream out = ex.getResponseBody()) {
+            while (true) {
+                Job j;
+                while ((j = pending.poll()) != null) {
+                    Tracked t = tracked.get(j.id);
+                    if (t != null) t.job = j;
+                    else if (!single && !finished.contains(j.id)) tracked.put(j.id, new Tracked(j));
+                }
+                Iterator<Tracked> it = tracked.values().iterator();
+                while (it.hasNext()) {
+                    Tracked t = it.next();
+                    JobState state = t.job.state; // read before tailing so a final state implies all output is on disk
+                    tail(out, t, state.isFinal());
+                    if (state != t.sent) {
+                        t.sent = state;
+                        event(out, "state", "{\"jobId\":\"" + t.job.id + "\",\"sid\":" + json(t.job.sid)
+                                + ",\"class\":" + json(t.job.className) + ",\"state\":\"" + state
+                                + "\",\"exit\":" + t.job.exit + "}");
+                    }
+                    if (state.isFinal()) {
+                        it.remove();
+                        finished.add(t.job.id); // late notifications for it are ignored
+                    }
+                }
+                out.flush();
+                if (single && tracked.isEmpty()) return;
+                wake.drainPermits();
+                if (!pending.isEmpty()) continue;
+                if (!wake.tryAcquire(HEARTBEAT_MS, TimeUnit.MILLISECONDS)) {
+                    out.write(": keepalive\n\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Sends what was appended to the stdout file since the last call, never splitting a UTF-8 sequence
+    // unless the job is done and nothing more will follow.
+    private void tail(OutputStream out, Tracked t, boolean last) throws IOException {
+        try (FileChannel ch = FileChannel.open(t.job.stdoutPath, StandardOpenOption.READ)) {
+            while (t.offset < ch.size()) {
+                buf.clear();
+                int n = ch.read(buf, t.offset);
+                if (n <= 0) break;
+                int cut = last ? n : utf8Boundary(buf.array(), n);
+                if (cut == 0) break;
+                event(out, "output", "{\"jobId\":\"" + t.job.id + "\",\"offset\":" + t.offset + ",\"chunk\":"
+                        + json(new String(buf.array(), 0, cut, StandardCharsets.UTF_8)) + "}");
+                t.offset += cut;
+            }
+        } catch (NoSuchFileException e) {
+            // not started yet, or already swept
+        }
+    }
+
+    // Length of the prefix of b[0..n) that ends on a complete UTF-8 sequence.
+    private static int utf8Boundary(byte[] b, int n) {
+        for (int i = n - 1, back = 0; i >= 0 && back < 4; i--, back++) {
+            int c = b[i] & 0xff;
+            if (c < 0x80) return n;
+            if (c >= 0xc0) {
+                int len = c >= 0xf0 ? 4 : c >= 0xe0 ? 3 : 2;
+                return back + 1 >= len ? n : i;
+            }
+        }
+        return n;
+    }
+
+    private static void event(OutputStream out, String name, String data) throws IOException {
+        out.write(("event: " + name + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String json(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
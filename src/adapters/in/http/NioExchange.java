@@ -0,0 +1,264 @@
+package adapters.in.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One request read by {@link NioHttpServerAdapter}, presented as an
+ * {@link HttpExchange} so the handlers in {@link HttpServerAdapter} run
+ * unchanged. The request body is already in memory. The response is written
+ * into pooled direct buffers that the connection's event loop drains;
+ * {@code sendResponseHeaders} follows the JDK server's contract (length 0
+ * means chunked, -1 means no body).
+ */
+final class NioExchange extends HttpExchange {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static volatile String date = "";
+    private static volatile long dateSecond;
+
+    private final NioHttpServerAdapter.Connection conn;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private InputStream requestBody;
+    private OutputStream responseBody = new Body();
+
+    private ByteBuffer buf;           // response bytes not yet handed to the connection
+    private int code = -1;
+    private long remaining;           // fixed-length bytes still owed; -1 for chunked
+    private boolean noBody;
+    private boolean chunked;
+    private int staged;               // chunk bytes waiting in conn.staging()
+    private boolean closeConnection;
+    private boolean done;
+
+    NioExchange(NioHttpServerAdapter.Connection conn, String method, URI uri, String protocol, Headers requestHeaders) {
+        this.conn = conn;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = InputStream.nullInputStream();
+        String connection = requestHeaders.getFirst("Connection");
+        this.closeConnection = protocol.equals("HTTP/1.0")
+                ? !"keep-alive".equalsIgnoreCase(connection)
+                : "close".equalsIgnoreCase(connection);
+    }
+
+    /** Sets the request body once the loop has read all of it, before dispatch. */
+    void body(byte[] body) {
+        requestBody = new ByteArrayInputStream(body);
+    }
+
+    @Override public Headers getRequestHeaders() { return requestHeaders; }
+    @Override public Headers getResponseHeaders() { return responseHeaders; }
+    @Override public URI getRequestURI() { return uri; }
+    @Override public String getRequestMethod() { return method; }
+    @Override public HttpContext getHttpContext() { return null; } // no contexts: one handler serves every path
+    @Override public InputStream getRequestBody() { return requestBody; }
+    @Override public OutputStream getResponseBody() { return responseBody; }
+    @Override public InetSocketAddress getRemoteAddress() { return conn.remoteAddress(); }
+    @Override public InetSocketAddress getLocalAddress() { return conn.localAddress(); }
+    @Override public int getResponseCode() { return code; }
+    @Override public String getProtocol() { return protocol; }
+    @Override public Object getAttribute(String name) { return attributes.get(name); }
+    @Override public void setAttribute(String name, Object value) { attributes.put(name, value); }
+    @Override public HttpPrincipal getPrincipal() { return null; }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) requestBody = i;
+        if (o != null) responseBody = o;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (code >= 0) throw new IOException("Headers already sent");
+        code = rCode;
+        noBody = rCode < 200 || rCode == 204 || rCode == 304 || method.equals("HEAD");
+        String connection = responseHeaders.getFirst("Connection");
+        if ("close".equalsIgnoreCase(connection)) closeConnection = true;
+
+        StringBuilder head = new StringBuilder(256)
+                .append("HTTP/1.1 ").append(rCode).append(' ').append(reason(rCode)).append("\r\n")
+                .append("Date: ").append(date()).append("\r\n");
+        if (responseLength > 0) {
+            head.append("Content-Length: ").append(responseLength).append("\r\n");
+            remaining = responseLength;
+        } else if (responseLength == 0 && !noBody) {
+            head.append("Transfer-Encoding: chunked\r\n");
+            chunked = true;
+            remaining = -1;
+        } else if (rCode >= 200 && rCode != 204 && rCode != 304) {
+            head.append("Content-Length: 0\r\n");
+        }
+        if (closeConnection && connection == null) head.append("Connection: close\r\n");
+        for (Map.Entry<String, List<String>> e : responseHeaders.entrySet()) {
+            for (String v : e.getValue()) head.append(e.getKey()).append(": ").append(v).append("\r\n");
+        }
+        head.append("\r\n");
+        byte[] bytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        put(bytes, 0, bytes.length);
+        if (noBody) remaining = 0;
+    }
+
+    /** Finishes the response; without a complete one the connection is closed. */
+    @Override
+    public void close() {
+        if (done) return;
+        try {
+            if (code < 0) {
+                closeConnection = true;
+            } else if (chunked) {
+                writeChunk();
+                if (!noBody) put(LAST_CHUNK, 0, LAST_CHUNK.length);
+            } else if (remaining > 0) {
+                closeConnection = true; // the client would wait for bytes that never come
+            }
+        } catch (IOException e) {
+            closeConnection = true;
+        } finally {
+            done = true;
+            ByteBuffer last = buf == null || buf.position() == 0 ? null : buf.flip();
+            if (buf != null && last == null) conn.pool().release(buf);
+            buf = null;
+            conn.complete(last, closeConnection); // the tail of a small response goes out in the same hand-off
+        }
+    }
+
+    /** The handler failed: answer 500 if nothing was sent yet, and drop the connection either way. */
+    void fail(Throwable t) {
+        closeConnection = true;
+        if (code >= 0 || done) return;
+        try {
+            responseHeaders.clear();
+            byte[] msg = ("Internal error: " + t).getBytes(StandardCharsets.UTF_8);
+            responseHeaders.set("Content-Type", "text/plain; charset=utf-8");
+            sendResponseHeaders(500, msg.length);
+            responseBody.write(msg);
+        } catch (IOException ignored) {}
+    }
+
+    // ---- helpers ----
+    // The stream handed to handlers: framing per sendResponseHeaders, nothing on the wire for HEAD and 304s.
+    private final class Body extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (code < 0) throw new IOException("sendResponseHeaders has not been called");
+            if (done) throw new IOException("Exchange closed");
+            if (len == 0 || noBody) return;
+            if (chunked) {
+                byte[] staging = conn.staging();
+                while (len > 0) {
+                    int n = Math.min(len, staging.length - staged);
+                    System.arraycopy(b, off, staging, staged, n);
+                    staged += n;
+                    off += n;
+                    len -= n;
+                    if (staged == staging.length) writeChunk();
+                }
+                return;
+            }
+            if (len > remaining) throw new IOException("Too many bytes for Content-Length");
+            remaining -= len;
+            put(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (code < 0 || done) return;
+            if (chunked) writeChunk();
+            flushBuffer();
+        }
+
+        @Override
+        public void close() {
+            NioExchange.this.close();
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        if (staged == 0) return;
+        byte[] size = (Integer.toHexString(staged) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        put(size, 0, size.length);
+        put(conn.staging(), 0, staged);
+        put(CRLF, 0, 2);
+        staged = 0;
+    }
+
+    private void put(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (buf == null) buf = conn.pool().acquire();
+            int n = Math.min(len, buf.remaining());
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!buf.hasRemaining()) flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buf == null || buf.position() == 0) return;
+        ByteBuffer b = buf.flip();
+        buf = null;
+        conn.submit(b);
+    }
+
+    private static String date() {
+        long now = System.currentTimeMillis() / 1000;
+        if (now != dateSecond) {
+            date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+            dateSecond = now;
+        }
+        return date;
+    }
+
+    static String reason(int code) {
+        return switch (code) {
+            case 100 -> "Continue";
+            case 200 -> "OK";
+            case 202 -> "Accepted";
+            case 204 -> "No Content";
+            case 206 -> "Partial Content";
+            case 304 -> "Not Modified";
+            case 400 -> "Bad Request";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 409 -> "Conflict";
+            case 411 -> "Length Required";
+            case 413 -> "Content Too Large";
+            case 416 -> "Range Not Satisfiable";
+            case 429 -> "Too Many Requests";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 503 -> "Service Unavailable";
+            default -> "";
+        };
+    }
+}
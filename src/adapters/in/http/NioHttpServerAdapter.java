@@ -0,0 +1,495 @@
+package adapters.in.http;
+
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves the {@link HttpServerAdapter} handlers from a few selector threads
+ * instead of {@code com.sun.net.httpserver.HttpServer}. Each event loop owns
+ * its connections: it reads and parses requests, then hands each complete
+ * one to the request executor, where the handler may block on a route as
+ * before. The response comes back through pooled direct buffers that the
+ * loop writes out as the socket accepts them; a handler that gets more than
+ * {@link #MAX_QUEUED_BUFFERS} ahead of the client waits.
+ * <p>
+ * Connections are HTTP/1.1 keep-alive. Pipelined requests are read ahead but
+ * only dispatched once the previous response is complete, so responses
+ * leave in request order. Request bodies need a Content-Length (up to
+ * {@link #MAX_BODY_BYTES}) and are read fully before dispatch, into a buffer
+ * that grows with the bytes actually received rather than the declared
+ * length; request heads
+ * must fit one {@link BufferPool#BUFFER_BYTES} buffer. Idle connections are
+ * closed after {@link #IDLE_TIMEOUT_MS}.
+ */
+public class NioHttpServerAdapter {
+    static final int MAX_BODY_BYTES = 16 << 20;
+    static final int INITIAL_BODY_BYTES = 16 * 1024;
+    static final int MAX_QUEUED_BUFFERS = 4;
+    static final long IDLE_TIMEOUT_MS = 30_000;
+    static final int CHUNK_BYTES = 8 * 1024;
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpServerAdapter handlers;
+    private final int eventLoops;
+    private final BufferPool pool = new BufferPool(4096);
+    private ExecutorService executor;
+
+    public NioHttpServerAdapter(HttpServerAdapter handlers, int eventLoops) {
+        if (eventLoops <= 0) throw new IllegalArgumentException("Need at least one event loop");
+        this.handlers = handlers;
+        this.eventLoops = eventLoops;
+    }
+
+    public void start(int port) throws IOException {
+        executor = handlers.requestExecutor();
+        handlers.startAssets();
+        Loop[] loops = new Loop[eventLoops];
+        for (int i = 0; i < loops.length; i++) loops[i] = new Loop("http-loop-" + i);
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        Thread acceptor = new Thread(() -> accept(server, loops), "http-accept");
+        acceptor.start(); // not a daemon: keeps the JVM alive like HttpServer's dispatcher
+        for (Loop l : loops) l.thread.start();
+        System.out.println("Listening on http://localhost:" + port + " (nio, " + eventLoops + " event loops)");
+    }
+
+    // ---- helpers ----
+    private void accept(ServerSocketChannel server, Loop[] loops) {
+        int next = 0;
+        while (true) {
+            SocketChannel ch;
+            try {
+                ch = server.accept(); // blocking: the acceptor has nothing else to do
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                System.err.println("NIO accept failed: " + e);
+                continue;
+            }
+            Loop l = loops[next];
+            next = (next + 1) % loops.length; // wraps, so the index never overflows however long we run
+            l.execute(() -> l.register(ch));
+        }
+    }
+
+    // One selector thread and the connections registered with it.
+    private final class Loop {
+        final Thread thread;
+        final Selector selector;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        long lastSweep = System.currentTimeMillis();
+
+        Loop(String name) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel ch) {
+            try {
+                Connection c = new Connection(this, ch);
+                c.key = ch.register(selector, SelectionKey.OP_READ, c);
+            } catch (IOException e) {
+                try {
+                    ch.close();
+                } catch (IOException ignored) {}
+            }
+        }
+
+        private void run() {
+            while (true) {
+                try {
+                    selector.select(1000);
+                } catch (IOException e) {
+                    System.err.println("NIO select failed: " + e);
+                    continue;
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey k = it.next();
+                    it.remove();
+                    Connection c = (Connection) k.attachment();
+                    if (!k.isValid()) continue;
+                    if (k.isWritable()) c.flush();
+                    if (k.isValid() && k.isReadable()) c.read();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= 1000) {
+                    lastSweep = now;
+                    for (SelectionKey k : selector.keys()) {
+                        Connection c = (Connection) k.attachment();
+                        if (c.exchange == null && now - c.lastActive > IDLE_TIMEOUT_MS) c.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One client connection. Parsing and socket I/O happen on the owning
+     * loop; {@link #submit} and {@link #complete} are called by the request
+     * thread running the current exchange.
+     */
+    final class Connection {
+        private final Loop loop;
+        private final SocketChannel ch;
+        SelectionKey key;
+        long lastActive = System.currentTimeMillis();
+
+        // Loop-only state.
+        private ByteBuffer in;              // unparsed bytes (write mode); null while there are none
+        private NioExchange pending;        // head parsed, body still arriving
+        private byte[] body;                // doubles as bytes arrive, up to bodyLength
+        private int bodyLength;
+        private int bodyRead;
+        NioExchange exchange;               // dispatched and not yet fully written
+
+        private byte[] staging;             // chunk staging for the request thread, reused across exchanges
+
+        // Shared with the request thread; guarded by this.
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private boolean flushScheduled;
+        private boolean responseDone;
+        private boolean closeAfter;
+        private boolean closed;
+
+        Connection(Loop loop, SocketChannel ch) {
+            this.loop = loop;
+            this.ch = ch;
+        }
+
+        BufferPool pool() {
+            return pool;
+        }
+
+        byte[] staging() {
+            if (staging == null) staging = new byte[CHUNK_BYTES];
+            return staging;
+        }
+
+        InetSocketAddress remoteAddress() {
+            try {
+                return (InetSocketAddress) ch.getRemoteAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        InetSocketAddress localAddress() {
+            try {
+                return (InetSocketAddress) ch.getLocalAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /** Queues response bytes for the loop; blocks while the client is too far behind. */
+        void submit(ByteBuffer b) throws IOException {
+            boolean schedule;
+            synchronized (this) {
+                if (closed) {
+                    pool.release(b);
+                    throw new IOException("Connection closed");
+                }
+                out.add(b);
+                schedule = !flushScheduled;
+                flushScheduled = true;
+            }
+            if (schedule) loop.execute(this::flush);
+            synchronized (this) {
+                while (out.size() > MAX_QUEUED_BUFFERS && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while writing the response");
+                    }
+                }
+                if (closed) throw new IOException("Connection closed");
+            }
+        }
+
+        /** The current exchange has written everything it will; {@code last} (may be null) is its final buffer. */
+        void complete(ByteBuffer last, boolean close) {
+            boolean schedule;
+            synchronized (this) {
+                if (last != null) {
+                    if (closed) pool.release(last);
+                    else out.add(last);
+                }
+                responseDone = true;
+                closeAfter |= close;
+                schedule = !flushScheduled;
+                flushScheduled = true;
+            }
+            if (schedule) loop.execute(this::flush);
+        }
+
+        // Writes queued buffers until the socket pushes back; then the rest of the exchange's lifecycle.
+        void flush() {
+            synchronized (this) {
+                flushScheduled = false;
+            }
+            try {
+                while (true) {
+                    ByteBuffer b;
+                    synchronized (this) {
+                        b = out.peek();
+                    }
+                    if (b == null) break;
+                    ch.write(b);
+                    if (b.hasRemaining()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    synchronized (this) {
+                        out.poll();
+                        notifyAll();
+                    }
+                    pool.release(b);
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (!key.isValid()) return;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            boolean finished, close;
+            synchronized (this) {
+                finished = responseDone && out.isEmpty();
+                close = closeAfter;
+                if (finished) responseDone = false;
+            }
+            if (!finished) return;
+            exchange = null;
+            lastActive = System.currentTimeMillis();
+            if (close) {
+                close();
+                return;
+            }
+            parse(); // a pipelined request may already be waiting
+        }
+
+        void read() {
+            if (in == null) in = pool.acquire();
+            int n;
+            try {
+                n = ch.read(in);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            lastActive = System.currentTimeMillis();
+            parse();
+        }
+
+        // Consumes buffered bytes into at most one request, dispatching it when complete.
+        private void parse() {
+            if (exchange != null || !key.isValid()) return;
+            if (in != null && pending == null) {
+                int end = headEnd();
+                if (end < 0) {
+                    if (!in.hasRemaining()) reject(431, "Request head over " + BufferPool.BUFFER_BYTES + " bytes");
+                    else readMore();
+                    return;
+                }
+                byte[] head = new byte[end];
+                in.flip();
+                in.get(head);
+                in.compact();
+                if (!head(new String(head, StandardCharsets.ISO_8859_1))) return;
+            }
+            if (pending == null) {
+                readMore();
+                return;
+            }
+            if (bodyRead < bodyLength && in != null) {
+                in.flip();
+                int n = Math.min(in.remaining(), bodyLength - bodyRead);
+                if (bodyRead + n > body.length) {
+                    body = Arrays.copyOf(body, Math.min(bodyLength, Math.max(body.length * 2, bodyRead + n)));
+                }
+                in.get(body, bodyRead, n);
+                bodyRead += n;
+                in.compact();
+            }
+            if (bodyRead < bodyLength) {
+                readMore();
+                return;
+            }
+            NioExchange ex = pending;
+            ex.body(body);
+            pending = null;
+            body = null;
+            exchange = ex;
+            releaseInIfEmpty();
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ); // pipelined requests wait in the socket
+            executor.execute(() -> {
+                try {
+                    handlers.handle(ex);
+                } catch (IOException e) {
+                    ex.fail(e); // usually the client went away
+                } catch (Throwable t) {
+                    System.err.println("Handler failed for " + ex.getRequestURI() + ": " + t);
+                    ex.fail(t);
+                } finally {
+                    ex.close();
+                }
+            });
+        }
+
+        // Parses the request line and headers; false (with an error response queued) when they are unusable.
+        private boolean head(String head) {
+            String[] lines = head.split("\r?\n");
+            String[] request = lines[0].split(" ");
+            if (request.length != 3 || !request[2].startsWith("HTTP/1.")) {
+                reject(400, "Malformed request line");
+                return false;
+            }
+            Headers headers = new Headers();
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i];
+                if (line.isEmpty()) continue;
+                int colon = line.indexOf(':');
+                if (colon <= 0 || line.charAt(0) == ' ' || line.charAt(0) == '\t') {
+                    reject(400, "Malformed header line");
+                    return false;
+                }
+                headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+            URI uri;
+            try {
+                uri = new URI(request[1]);
+            } catch (URISyntaxException e) {
+                reject(400, "Malformed request target");
+                return false;
+            }
+            if (headers.containsKey("Transfer-Encoding")) {
+                reject(411, "Chunked request bodies are not supported; send Content-Length");
+                return false;
+            }
+            long length = 0;
+            String cl = headers.getFirst("Content-Length");
+            if (cl != null) {
+                try {
+                    length = Long.parseLong(cl.trim());
+                } catch (NumberFormatException e) {
+                    length = -1;
+                }
+                if (length < 0) {
+                    reject(400, "Bad Content-Length");
+                    return false;
+                }
+                if (length > MAX_BODY_BYTES) {
+                    reject(413, "Request body over " + MAX_BODY_BYTES + " bytes");
+                    return false;
+                }
+            }
+            // The header is the client's word; allocate for what actually arrives.
+            bodyLength = (int) length;
+            body = new byte[Math.min(bodyLength, INITIAL_BODY_BYTES)];
+            bodyRead = 0;
+            pending = new NioExchange(this, request[0], uri, request[2], headers);
+            boolean buffered = in != null && in.position() > 0;
+            if (length > 0 && !buffered && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                send(CONTINUE);
+            }
+            return true;
+        }
+
+        // Length of the head including its blank line, or -1 while incomplete.
+        private int headEnd() {
+            for (int i = 0, n = in.position(); i < n; i++) {
+                if (in.get(i) != '\n') continue;
+                if (i + 1 < n && in.get(i + 1) == '\n') return i + 2;
+                if (i + 2 < n && in.get(i + 1) == '\r' && in.get(i + 2) == '\n') return i + 3;
+            }
+            return -1;
+        }
+
+        private void readMore() {
+            releaseInIfEmpty();
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        private void releaseInIfEmpty() {
+            if (in != null && in.position() == 0) {
+                pool.release(in);
+                in = null;
+            }
+        }
+
+        // Answers a request the loop refused to dispatch, then closes the connection.
+        private void reject(int code, String message) {
+            byte[] msg = message.getBytes(StandardCharsets.UTF_8);
+            String head = "HTTP/1.1 " + code + " " + NioExchange.reason(code) + "\r\n"
+                    + "Content-Type: text/plain; charset=utf-8\r\nContent-Length: " + msg.length
+                    + "\r\nConnection: close\r\n\r\n";
+            pending = null;
+            body = null;
+            exchange = null;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            synchronized (this) {
+                responseDone = true;
+                closeAfter = true;
+            }
+            send(head.getBytes(StandardCharsets.ISO_8859_1), msg);
+        }
+
+        // Loop-side write of a small interim or error response.
+        private void send(byte[]... parts) {
+            ByteBuffer b = pool.acquire();
+            for (byte[] p : parts) b.put(p);
+            synchronized (this) {
+                out.add(b.flip());
+            }
+            flush();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                for (ByteBuffer b : out) pool.release(b);
+                out.clear();
+                notifyAll();
+            }
+            if (key != null) key.cancel();
+            try {
+                ch.close();
+            } catch (IOException ignored) {}
+            pool.release(in);
+            in = null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package adapters.in.http;
+
+import app.QueryParams;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sends part of a job's {@code .out} or {@code .err} file straight from its
+ * {@link FileChannel}, so paging through a huge log costs constant memory.
+ * The part is picked, in order of precedence, by a single-range
+ * {@code Range: bytes=...} header (answered with 206), {@code tail=N} (last
+ * N lines) or {@code offset=}/{@code limit=} in bytes. The file is measured
+ * once per request; bytes appended afterwards belong to the next read, whose
+ * start is reported in {@code X-Next-Offset}. Whole-file and query-picked
+ * parts may go out compressed; ranges always count raw bytes and do not.
+ */
+final class OutputSlice {
+    private static final int SCAN = 8192;
+
+    private OutputSlice() {}
+
+    static void send(HttpExchange ex, Path file, ResponseCompression compression) throws IOException {
+        QueryParams qs = QueryParams.parse(ex.getRequestURI().getRawQuery());
+        FileChannel ch;
+        try {
+            ch = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            ch = null; // queued job, nothing written yet
+        }
+        try (FileChannel c = ch) {
+            long size = c == null ? 0 : c.size();
+            long start = 0, end = size;
+            boolean partial = false;
+
+            String range = ex.getRequestHeaders().getFirst("Range");
+            long[] r = range == null ? null : parseRange(range, size);
+            if (r != null && r.length == 0) {
+                ex.getResponseHeaders().set("Content-Range", "bytes */" + size);
+                HttpServerAdapter.send(ex, 416, "text/plain; charset=utf-8", "Range not satisfiable");
+                return;
+            }
+            if (r != null) {
+                start = r[0];
+                end = r[1];
+                partial = true;
+            } else if (qs.has("tail")) {
+                long lines = parseLong(qs.get("tail"), -1);
+                if (lines < 0) { badRequest(ex, "tail= must be a non-negative integer"); return; }
+                start = c == null ? 0 : tailStart(c, size, lines);
+            } else {
+                long offset = parseLong(qs.get("offset", "0"), -1);
+                long limit = parseLong(qs.get("limit", String.valueOf(Long.MAX_VALUE)), -1);
+                if (offset < 0 || limit < 0) { badRequest(ex, "offset= and limit= must be non-negative integers"); return; }
+                start = Math.min(offset, size);
+                end = start + Math.min(limit, size - start);
+            }
+
+            long len = end - start;
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            ex.getResponseHeaders().set("Accept-Ranges", "bytes");
+            ex.getResponseHeaders().set("X-Next-Offset", String.valueOf(end));
+            if (partial) ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + size);
+            ResponseCompression.Coding coding = partial ? null : compression.negotiate(ex, len);
+            if (coding != null) {
+                ex.getResponseHeaders().set("Content-Encoding", coding.token);
+                ex.sendResponseHeaders(200, 0);
+            } else {
+                ex.sendResponseHeaders(partial ? 206 : 200, len == 0 ? -1 : len);
+            }
+            try (OutputStream os = coding == null ? ex.getResponseBody()
+                    : compression.encoder(ex.getResponseBody(), coding)) {
+                if (len == 0) return;
+                WritableByteChannel out = Channels.newChannel(os);
+                long pos = start;
+                while (pos < end) {
+                    long n = c.transferTo(pos, end - pos, out);
+                    if (n <= 0) throw new IOException(file + " shrank while being sent");
+                    pos += n;
+                }
+            }
+        }
+    }
+
+    // ---- helpers ----
+
+    // [start, end) for a single "bytes=a-b", "bytes=a-" or "bytes=-n" range; an empty array when it
+    // cannot be satisfied; null when the header is malformed or asks for several ranges (send it all).
+    private static long[] parseRange(String header, long size) {
+        String h = header.trim();
+        if (!h.startsWith("bytes=") || h.indexOf(',') >= 0) return null;
+        String spec = h.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        String a = spec.substring(0, dash).trim(), b = spec.substring(dash + 1).trim();
+        if (a.isEmpty()) {
+            long n = parseLong(b, -1);
+            if (n < 0) return null;
+            if (n == 0 || size == 0) return new long[0];
+            return new long[] { size - Math.min(n, size), size };
+        }
+        long first = parseLong(a, -1);
+        long last = b.isEmpty() ? Long.MAX_VALUE - 1 : parseLong(b, -1);
+        if (first < 0 || last < 0 || last < first) return null;
+        if (first >= size) return new long[0];
+        return new long[] { first, Math.min(last + 1, size) };
+    }
+
+    // Offset of the first of the last `lines` lines, scanning backwards; a final newline does not open a line.
+    private static long tailStart(FileChannel c, long size, long lines) throws IOException {
+        if (lines == 0) return size;
+        ByteBuffer buf = ByteBuffer.allocate(SCAN);
+        long pos = size;
+        long seen = 0;
+        boolean skipLast = true;
+        while (pos > 0) {
+            int n = (int) Math.min(SCAN, pos);
+            pos -= n;
+            buf.clear().limit(n);
+            while (buf.hasRemaining()) {
+                if (c.read(buf, pos + buf.position()) < 0) break;
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                if (buf.get(i) != '\n') continue;
+                if (skipLast && pos + i == size - 1) continue;
+                if (++seen == lines) return pos + i + 1;
+            }
+            skipLast = false;
+        }
+        return 0;
+    }
+
+    private static long parseLong(String s, long dflt) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return dflt;
+        }
+    }
+
+    private static void badRequest(HttpExchange ex, String msg) throws IOException {
+        HttpServerAdapter.send(ex, 400, "text/plain; charset=utf-8", msg);
+    }
+}
@@ -0,0 +1,298 @@
+package adapters.in.http;
+
+import app.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * gzip or deflate for dynamic responses, picked from {@code Accept-Encoding}.
+ * Bodies shorter than {@code minBytes} go out as they are; a streamed body is
+ * held until it reaches that size, so short route output still gets a
+ * Content-Length. Deflaters are pooled and reset between responses instead of
+ * being created per response: each holds a few hundred KiB of native zlib
+ * state, and request threads may be virtual, one per request.
+ */
+public final class ResponseCompression {
+    public static final int DEFAULT_MIN_BYTES = 1024;
+    public static final int DEFAULT_LEVEL = 6;
+    private static final int MAX_IDLE = 64;
+    private static final int BUFFER_BYTES = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    enum Coding {
+        GZIP("gzip", "-gz"),
+        DEFLATE("deflate", "-df");
+
+        final String token;
+        private final String etagSuffix;
+
+        Coding(String token, String etagSuffix) {
+            this.token = token;
+            this.etagSuffix = etagSuffix;
+        }
+
+        /** The ETag of this encoding of the representation tagged {@code etag}. */
+        String etag(String etag) {
+            return etag.substring(0, etag.length() - 1) + etagSuffix + "\"";
+        }
+    }
+
+    private final int minBytes;
+    private final int level;
+    private final Pool gzip = new Pool(true);
+    private final Pool deflate = new Pool(false);
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    /** {@code level} 1-9 as for {@link Deflater}; 0 turns compression off. */
+    public ResponseCompression(int minBytes, int level) {
+        if (level < 0 || level > 9) throw new IllegalArgumentException("Compression level must be 0-9: " + level);
+        this.minBytes = Math.max(1, minBytes);
+        this.level = level;
+    }
+
+    public static ResponseCompression disabled() {
+        return new ResponseCompression(DEFAULT_MIN_BYTES, 0);
+    }
+
+    /**
+     * The coding for a body of {@code length} bytes (-1 when not known yet),
+     * or null to send it as is. Sets {@code Vary} whenever the answer depends
+     * on the request.
+     */
+    Coding negotiate(HttpExchange ex, long length) {
+        if (level == 0 || (length >= 0 && length < minBytes)) return null;
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        return choose(ex.getRequestHeaders().getFirst("Accept-Encoding"));
+    }
+
+    /** Like {@link HttpServerAdapter#send}, compressing the body when the client takes it and it shrinks. */
+    void send(HttpExchange ex, int code, String contentType, byte[] body) throws IOException {
+        Coding c = negotiate(ex, body.length);
+        if (c != null) {
+            byte[] encoded = encode(c, body);
+            if (encoded.length < body.length) {
+                ex.getResponseHeaders().set("Content-Encoding", c.token);
+                body = encoded;
+            }
+        }
+        HttpServerAdapter.send(ex, code, contentType, body);
+    }
+
+    /**
+     * Sends the headers of a streamed response and returns its body. When the
+     * client accepts compression the headers wait until {@code minBytes} have
+     * been written (flushes before that are held) or the stream is closed.
+     */
+    OutputStream stream(HttpExchange ex, int code) throws IOException {
+        Coding c = negotiate(ex, -1);
+        if (c == null) {
+            ex.sendResponseHeaders(code, 0);
+            return ex.getResponseBody();
+        }
+        return new Deferred(ex, code, c);
+    }
+
+    byte[] encode(Coding c, byte[] body) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream out = encoder(bos, c)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not from a ByteArrayOutputStream
+        }
+        return bos.toByteArray();
+    }
+
+    /** Compresses into {@code out}; closing it finishes the stream, closes {@code out} and returns the deflater. */
+    OutputStream encoder(OutputStream out, Coding c) throws IOException {
+        return new Encoder(out, c == Coding.GZIP ? gzip : deflate);
+    }
+
+    public void writeMetrics(StringBuilder sb) {
+        Metrics.counter(sb, "cgiplus_http_compressed_total", "Responses sent gzip- or deflate-encoded",
+                responses.sum());
+        Metrics.counter(sb, "cgiplus_http_compressed_bytes_in_total", "Response bytes before compression",
+                bytesIn.sum());
+        Metrics.counter(sb, "cgiplus_http_compressed_bytes_out_total", "Response bytes after compression",
+                bytesOut.sum());
+        Metrics.counter(sb, "cgiplus_http_deflaters_created_total", "Deflaters allocated (the rest were reused)",
+                created.sum());
+    }
+
+    // ---- helpers ----
+    // Highest q wins, gzip on a tie; "*" stands for whichever of the two is not named.
+    static Coding choose(String acceptEncoding) {
+        if (acceptEncoding == null) return null;
+        double gz = -1, df = -1, any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            int semi = part.indexOf(';');
+            String token = (semi < 0 ? part : part.substring(0, semi)).trim();
+            double q = semi < 0 ? 1 : qValue(part.substring(semi + 1));
+            if (token.equalsIgnoreCase("gzip") || token.equalsIgnoreCase("x-gzip")) gz = q;
+            else if (token.equalsIgnoreCase("deflate")) df = q;
+            else if (token.equals("*")) any = q;
+        }
+        if (gz < 0) gz = any;
+        if (df < 0) df = any;
+        if (gz <= 0 && df <= 0) return null;
+        return gz >= df ? Coding.GZIP : Coding.DEFLATE;
+    }
+
+    private static double qValue(String params) {
+        for (String p : params.split(";")) {
+            p = p.trim();
+            if (!p.regionMatches(true, 0, "q=", 0, 2)) continue;
+            try {
+                return Double.parseDouble(p.substring(2).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    // Idle deflaters of one format; surplus ones are ended rather than left for the cleaner.
+    private final class Pool {
+        final boolean gzip;
+        private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        Pool(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        Deflater acquire() {
+            Deflater d = idle.poll();
+            if (d != null) {
+                idleCount.decrementAndGet();
+                return d;
+            }
+            created.increment();
+            return new Deflater(level, gzip); // gzip carries raw deflate between its own header and trailer
+        }
+
+        void release(Deflater d) {
+            d.reset();
+            if (idleCount.incrementAndGet() <= MAX_IDLE) {
+                idle.offer(d);
+            } else {
+                idleCount.decrementAndGet();
+                d.end();
+            }
+        }
+    }
+
+    // Sync-flushing, so a route's flushes still reach the client once compression has started.
+    // A stream that is never closed loses its deflater to the cleaner instead of the pool.
+    private final class Encoder extends DeflaterOutputStream {
+        private final Pool pool;
+        private final CRC32 crc;
+        private boolean closed;
+
+        Encoder(OutputStream out, Pool pool) throws IOException {
+            super(out, pool.acquire(), BUFFER_BYTES, true);
+            this.pool = pool;
+            this.crc = pool.gzip ? new CRC32() : null;
+            if (crc != null) out.write(GZIP_HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            if (crc != null) crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (def.finished()) return;
+            super.finish();
+            if (crc == null) return;
+            int sum = (int) crc.getValue(), size = (int) def.getBytesRead();
+            out.write(new byte[] {
+                    (byte) sum, (byte) (sum >> 8), (byte) (sum >> 16), (byte) (sum >> 24),
+                    (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)});
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                finish();
+                responses.increment();
+                bytesIn.add(def.getBytesRead());
+                bytesOut.add(def.getBytesWritten() + (crc == null ? 0 : GZIP_HEADER.length + 8));
+            } finally {
+                pool.release(def);
+                out.close();
+            }
+        }
+    }
+
+    // A streamed body that commits to compression once minBytes have been written, or goes out
+    // plain with a Content-Length if it closes first.
+    private final class Deferred extends OutputStream {
+        private final HttpExchange ex;
+        private final int code;
+        private final Coding coding;
+        private ByteArrayOutputStream held = new ByteArrayOutputStream(Math.min(minBytes, BUFFER_BYTES));
+        private OutputStream out;
+        private boolean closed;
+
+        Deferred(HttpExchange ex, int code, Coding coding) {
+            this.ex = ex;
+            this.code = code;
+            this.coding = coding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            if (out != null) {
+                out.write(b, off, len);
+                return;
+            }
+            held.write(b, off, len);
+            if (held.size() < minBytes) return;
+            ex.getResponseHeaders().set("Content-Encoding", coding.token);
+            ex.sendResponseHeaders(code, 0);
+            out = encoder(ex.getResponseBody(), coding);
+            held.writeTo(out);
+            held = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (out != null) {
+                out.close();
+                return;
+            }
+            ex.sendResponseHeaders(code, held.size() == 0 ? -1 : held.size());
+            try (OutputStream os = ex.getResponseBody()) { held.writeTo(os); }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package adapters.in.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable in-memory index of {@code static/}, keyed by URL path. Content
+ * type, length, ETag and Last-Modified are computed once per file; files up
+ * to {@link #INLINE_LIMIT} bytes are held in memory along with a gzip
+ * variant when compression pays off, larger ones are streamed from disk with
+ * {@link FileChannel#transferTo}. A {@link WatchService} rebuilds the index
+ * and swaps it in whenever the folder changes.
+ */
+final class StaticAssets {
+    static final int INLINE_LIMIT = 256 * 1024;
+    private static final int GZIP_MIN = 256;
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    static final class Asset {
+        final Path file;
+        final String contentType;
+        final long length;
+        final String etag;
+        final String lastModified;
+        final long lastModifiedSec;
+        final byte[] bytes;     // null when larger than INLINE_LIMIT
+        final byte[] gzip;      // null when not worth compressing
+        final String gzipEtag;
+
+        Asset(Path file, String contentType, long length, String etag, long lastModifiedMs,
+              byte[] bytes, byte[] gzip) {
+            this.file = file;
+            this.contentType = contentType;
+            this.length = length;
+            this.etag = etag;
+            this.lastModifiedSec = lastModifiedMs / 1000;
+            this.lastModified = HTTP_DATE.format(Instant.ofEpochMilli(lastModifiedMs));
+            this.bytes = bytes;
+            this.gzip = gzip;
+            this.gzipEtag = gzip == null ? null : etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+
+        /** Copies a large asset to {@code out} through the file channel. */
+        void transferTo(WritableByteChannel out) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long pos = 0;
+                while (pos < length) {
+                    long n = ch.transferTo(pos, length - pos, out);
+                    if (n <= 0) throw new IOException(file + " shrank while being sent");
+                    pos += n;
+                }
+            }
+        }
+    }
+
+    private final Path root;
+    private volatile Map<String, Asset> index = Map.of();
+
+    StaticAssets(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /** Builds the index and starts watching the folder for changes. */
+    void start() throws IOException {
+        index = build();
+        if (!Files.isDirectory(root)) return;
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        registerAll(ws);
+        Thread t = new Thread(() -> watch(ws), "static-watch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** O(1) lookup of an already-normalized URL path such as {@code /} or {@code /css/app.css}. */
+    Asset lookup(String urlPath) {
+        return index.get(urlPath);
+    }
+
+    /** Looks up an absolute file previously resolved (and checked) against the root. */
+    Asset lookupFile(Path file) {
+        Path rel = root.relativize(file);
+        return index.get("/" + rel.toString().replace('\\', '/'));
+    }
+
+    // ---- helpers ----
+    private Map<String, Asset> build() throws IOException {
+        Map<String, Asset> m = new HashMap<>();
+        if (!Files.isDirectory(root)) return m;
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) s.filter(Files::isRegularFile)::iterator) {
+                Asset a = load(p);
+                String url = "/" + root.relativize(p).toString().replace('\\', '/');
+                m.put(url, a);
+                if (p.getFileName().toString().equals("index.html")) {
+                    String dir = url.substring(0, url.length() - "index.html".length());
+                    m.put(dir, a);                                            // "/docs/"
+                    if (dir.length() > 1) m.put(dir.substring(0, dir.length() - 1), a); // "/docs"
+                }
+            }
+        }
+        return Map.copyOf(m);
+    }
+
+    private Asset load(Path p) throws IOException {
+        long len = Files.size(p);
+        long mtime = Files.getLastModifiedTime(p).toMillis();
+        String type = Files.probeContentType(p);
+        if (type == null || type.isBlank()) type = guessContentType(p);
+        else if (type.startsWith("text/") && !type.contains("charset")) type += "; charset=utf-8";
+
+        MessageDigest md = sha256();
+        byte[] bytes = null;
+        byte[] gzip = null;
+        if (len <= INLINE_LIMIT) {
+            bytes = Files.readAllBytes(p);
+            md.update(bytes);
+            if (bytes.length >= GZIP_MIN && compressible(type)) {
+                byte[] gz = gzip(bytes);
+                if (gz.length < bytes.length * 9 / 10) gzip = gz;
+            }
+        } else {
+            // Large files are never held; identify them by size and mtime instead of content.
+            md.update((p + ":" + len + ":" + mtime).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] d = md.digest();
+        StringBuilder etag = new StringBuilder(34).append('"');
+        for (int i = 0; i < 16; i++) etag.append(Character.forDigit((d[i] >> 4) & 0xf, 16)).append(Character.forDigit(d[i] & 0xf, 16));
+        etag.append('"');
+        return new Asset(p, type, len, etag.toString(), mtime, bytes, gzip);
+    }
+
+    private void watch(WatchService ws) {
+        while (true) {
+            try {
+                WatchKey key = ws.take();
+                key.pollEvents();
+                key.reset();
+                WatchKey more;
+                while ((more = ws.poll(100, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                registerAll(ws); // pick up directories created since the last pass
+                index = build();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("StaticAssets: reindexing " + root + " failed: " + e);
+            }
+        }
+    }
+
+    private void registerAll(WatchService ws) throws IOException {
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) s.filter(Files::isDirectory)::iterator) {
+                dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    private static boolean compressible(String type) {
+        return type.startsWith("text/") || type.startsWith("application/javascript")
+                || type.startsWith("application/json") || type.startsWith("image/svg")
+                || type.contains("xml");
+    }
+
+    private static byte[] gzip(byte[] in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(in.length / 2);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(in);
+        }
+        return bos.toByteArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    static String guessContentType(Path p) {
+        String name = p.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".html") || name.endsWith(".htm")) return "text/html; charset=utf-8";
+        if (name.endsWith(".css")) return "text/css; charset=utf-8";
+        if (name.endsWith(".js")) return "application/javascript; charset=utf-8";
+        if (name.endsWith(".json")) return "application/json; charset=utf-8";
+        if (name.endsWith(".png")) return "image/png";
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
+        if (name.endsWith(".gif")) return "image/gif";
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,179 @@
+package adapters.out.cluster;
+
+import app.JobService;
+import app.Metrics;
+import domain.Job;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets {@link ClusterWorker} nodes run queued jobs. The coordinator keeps
+ * the one job queue ({@link JobService#scheduler()}); each connected node
+ * gets one thread per slot it offered, and each of those takes the next job
+ * the moment the previous one finishes, alongside the local job workers. A
+ * busy node therefore never holds jobs it cannot start while another has
+ * free slots. When a node disconnects or misses its heartbeats, the jobs it
+ * was running go back to the head of the queue (see
+ * {@link JobService#run}).
+ * <p>
+ * Only nodes that prove they hold the coordinator's secret may join (see
+ * {@link ClusterProtocol}); a node is handed job queries and bodies, so
+ * listen beyond loopback only on a network you trust.
+ */
+public class ClusterCoordinator {
+    private final JobService jobs;
+    private final InetAddress bind;
+    private final int port;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private final Set<RemoteNode> nodes = ConcurrentHashMap.newKeySet();
+
+    public ClusterCoordinator(JobService jobs, InetAddress bind, int port, byte[] secret) {
+        if (secret == null || secret.length == 0) throw new IllegalArgumentException("A cluster needs a shared secret");
+        this.jobs = jobs;
+        this.bind = bind;
+        this.port = port;
+        this.secret = secret.clone();
+    }
+
+    public void start() throws IOException {
+        ServerSocket server = new ServerSocket(port, 50, bind);
+        daemon(() -> accept(server), "cluster-accept");
+        daemon(this::heartbeat, "cluster-heartbeat");
+        jobs.addMetrics(sb -> {
+            int slots = 0, busy = 0;
+            for (RemoteNode n : nodes) {
+                slots += n.slots;
+                busy += n.inFlight();
+            }
+            Metrics.gauge(sb, "cgiplus_cluster_nodes", "Worker nodes connected to this coordinator.", nodes.size());
+            Metrics.gauge(sb, "cgiplus_cluster_slots", "Job slots offered by connected worker nodes.", slots);
+            Metrics.gauge(sb, "cgiplus_cluster_slots_busy", "Worker node slots running a job.", busy);
+        });
+        System.out.println("Cluster coordinator listening on " + bind.getHostAddress() + ":" + port);
+    }
+
+    // ---- helpers ----
+    private void accept(ServerSocket server) {
+        while (true) {
+            Socket s;
+            try {
+                s = server.accept();
+            } catch (IOException e) {
+                System.err.println("Cluster: accept failed: " + e);
+                continue;
+            }
+            daemon(() -> join(s), "cluster-join");
+        }
+    }
+
+    private void join(Socket s) {
+        RemoteNode node;
+        try {
+            s.setSoTimeout(ClusterProtocol.DEAD_AFTER_MS);
+            s.setTcpNoDelay(true);
+            byte[] nonce = new byte[ClusterProtocol.NONCE_BYTES];
+            random.nextBytes(nonce);
+            DataOutputStream challenge = new DataOutputStream(s.getOutputStream());
+            challenge.writeByte(ClusterProtocol.CHALLENGE);
+            challenge.write(nonce);
+            challenge.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            if (in.readByte() != ClusterProtocol.HELLO) throw new IOException("Expected HELLO");
+            int version = in.readInt();
+            if (version != ClusterProtocol.VERSION) throw new IOException("Unsupported protocol version " + version);
+            byte[] proof = new byte[ClusterProtocol.NONCE_BYTES];
+            in.readFully(proof);
+            if (!MessageDigest.isEqual(proof, ClusterProtocol.proof(secret, nonce))) throw new IOException("Wrong cluster secret");
+            String name = ClusterProtocol.readString(in) + "@" + s.getRemoteSocketAddress();
+            int slots = in.readInt();
+            if (slots <= 0) throw new IOException("Node offers no slots");
+            node = new RemoteNode(s, in, name, slots);
+        } catch (IOException e) {
+            System.err.println("Cluster: rejected " + s.getRemoteSocketAddress() + ": " + e);
+            try {
+                s.close();
+            } catch (IOException ignored) {}
+            return;
+        }
+        nodes.add(node);
+        System.out.println("Cluster: node " + node.name + " joined with " + node.slots + " slots");
+        for (int i = 0; i < node.slots; i++) {
+            Slot slot = new Slot(node);
+            slot.thread = daemon(slot::run, "cluster-slot-" + node.name + "-" + i);
+            node.onDeath(slot::wake);
+        }
+        node.onDeath(() -> nodes.remove(node));
+        node.read();
+    }
+
+    // One slot on a node: pulls one job at a time for as long as the node is alive.
+    private final class Slot {
+        final RemoteNode node;
+        Thread thread;
+        boolean parked;     // inside take(); guarded by this
+
+        Slot(RemoteNode node) {
+            this.node = node;
+        }
+
+        void run() {
+            while (true) {
+                synchronized (this) {
+                    if (node.isDead()) return;
+                    parked = true;
+                }
+                Job j = null;
+                try {
+                    j = jobs.scheduler().take();
+                } catch (InterruptedException ignored) {
+                } finally {
+                    synchronized (this) {
+                        parked = false;
+                        Thread.interrupted(); // a wake() that lost the race must not reach the job's file I/O
+                    }
+                }
+                if (j == null) return;
+                if (node.isDead()) { // lost between take() and here; nothing ran, so no attempt is spent
+                    jobs.scheduler().requeue(j);
+                    return;
+                }
+                jobs.run(j, node);
+            }
+        }
+
+        // Only a slot parked in take() is interrupted; one running a job hears from the node itself.
+        synchronized void wake() {
+            if (parked) thread.interrupt();
+        }
+    }
+
+    private void heartbeat() {
+        while (true) {
+            try {
+                Thread.sleep(ClusterProtocol.HEARTBEAT_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (RemoteNode n : nodes) n.ping();
+        }
+    }
+
+    static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+}
@@ -0,0 +1,85 @@
+package adapters.out.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Frames exchanged between a {@link ClusterCoordinator} and the
+ * {@link ClusterWorker} nodes connected to it, one TCP connection per node.
+ * Every frame starts with a type byte:
+ *
+ * <pre>
+ * coordinator to node:  CHALLENGE [nonce:32]     (first frame on a connection)
+ * node to coordinator:  HELLO  [version] [proof:32] [len][name] [slots]
+ *                       OUTPUT [seq] [len][stdout bytes]
+ *                       DONE   [seq] [exit] [spawnNanos:long] [len][stderr bytes]
+ * coordinator to node:  RUN    [seq] [len][className] [len][query] [len][body]
+ *                       CANCEL [seq]
+ * both ways:            PING
+ * </pre>
+ * Integers are big-endian as written by {@link DataOutputStream}; strings are
+ * UTF-8. Both ends send PING every {@link #HEARTBEAT_MS} and drop a peer
+ * that stays silent for {@link #DEAD_AFTER_MS}. The proof is
+ * {@link #proof} of the nonce under the secret both ends were started with,
+ * so the secret itself never crosses the wire; frames are not encrypted.
+ */
+final class ClusterProtocol {
+    static final int VERSION = 2;
+
+    static final byte HELLO = 1;
+    static final byte OUTPUT = 2;
+    static final byte DONE = 3;
+    static final byte RUN = 10;
+    static final byte CANCEL = 11;
+    static final byte CHALLENGE = 12;
+    static final byte PING = 20;
+
+    static final int HEARTBEAT_MS = 1000;
+    static final int DEAD_AFTER_MS = 5000;
+    /** Largest length prefix either end accepts. */
+    static final int MAX_FRAME_BYTES = 64 << 20;
+    static final int NONCE_BYTES = 32;
+
+    private ClusterProtocol() {}
+
+    static void writeBytes(DataOutputStream out, byte[] b, int off, int len) throws IOException {
+        out.writeInt(len);
+        out.write(b, off, len);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        writeBytes(out, b, 0, b.length);
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > MAX_FRAME_BYTES) throw new IOException("Bad frame length: " + len);
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return b;
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /** HMAC-SHA256 of {@code nonce} under the shared cluster secret. */
+    static byte[] proof(byte[] secret, byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
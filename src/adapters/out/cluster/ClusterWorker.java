@@ -0,0 +1,228 @@
+package adapters.out.cluster;
+
+import ports.CancelToken;
+import ports.RouteExecutorPort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A worker node: connects to a {@link ClusterCoordinator}, offers
+ * {@code slots} job slots and runs whatever it is sent on its own
+ * {@link RouteExecutorPort}, streaming stdout back as the route produces it.
+ * Reconnects (with backoff) whenever the coordinator goes away; routes still
+ * running at that point are cancelled, since the coordinator has already
+ * queued them again.
+ */
+public class ClusterWorker {
+    static final long MAX_BACKOFF_MS = 10_000;
+    /** Stderr beyond this is cut off before it is sent back. */
+    static final int MAX_STDERR_BYTES = 1 << 20;
+
+    private final RouteExecutorPort executor;
+    private final String host;
+    private final int port;
+    private final int slots;
+    private final String name;
+    private final byte[] secret;
+    private final ExecutorService pool;
+    private volatile Socket current;
+    private volatile boolean stopped;
+
+    public ClusterWorker(RouteExecutorPort executor, String host, int port, int slots, String name, byte[] secret) {
+        if (slots <= 0) throw new IllegalArgumentException("A node needs at least one slot");
+        if (secret == null || secret.length == 0) throw new IllegalArgumentException("A cluster needs a shared secret");
+        this.executor = executor;
+        this.host = host;
+        this.port = port;
+        this.slots = slots;
+        this.name = name;
+        this.secret = secret.clone();
+        this.pool = Executors.newFixedThreadPool(slots, r -> {
+            Thread t = new Thread(r, "node-slot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Serves the coordinator until {@link #stop()}. */
+    public void run() throws InterruptedException {
+        long backoff = 250;
+        while (!stopped) {
+            Session session = null;
+            try (Socket s = new Socket()) {
+                current = s;
+                if (stopped) break;
+                s.connect(new InetSocketAddress(host, port), ClusterProtocol.DEAD_AFTER_MS);
+                s.setSoTimeout(ClusterProtocol.DEAD_AFTER_MS);
+                s.setTcpNoDelay(true);
+                System.out.println("Node " + name + ": connected to " + host + ":" + port + " with " + slots + " slots");
+                session = new Session(s);
+                session.serve();
+            } catch (IOException e) {
+                System.err.println("Node " + name + ": " + (e instanceof SocketTimeoutException
+                        ? "coordinator silent for " + ClusterProtocol.DEAD_AFTER_MS + " ms" : e.toString()));
+            }
+            if (stopped) break;
+            if (session != null && session.joined) backoff = 250; // a refused HELLO keeps backing off
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Drops the connection the way a crash would and stops reconnecting;
+     * routes still running are cancelled and the coordinator queues them again.
+     */
+    public void stop() {
+        stopped = true;
+        Socket s = current;
+        if (s == null) return;
+        try {
+            s.close();
+        } catch (IOException ignored) {}
+    }
+
+    // ---- helpers ----
+    // One connection to the coordinator.
+    private final class Session {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Map<Integer, CancelToken> running = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+        private volatile boolean joined;    // the coordinator has sent something after HELLO
+
+        Session(Socket s) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        }
+
+        void serve() throws IOException {
+            if (in.readByte() != ClusterProtocol.CHALLENGE) throw new IOException("Expected CHALLENGE");
+            byte[] nonce = new byte[ClusterProtocol.NONCE_BYTES];
+            in.readFully(nonce);
+            Thread pinger = ClusterCoordinator.daemon(this::ping, "node-heartbeat");
+            try {
+                synchronized (out) {
+                    out.writeByte(ClusterProtocol.HELLO);
+                    out.writeInt(ClusterProtocol.VERSION);
+                    out.write(ClusterProtocol.proof(secret, nonce));
+                    ClusterProtocol.writeString(out, name);
+                    out.writeInt(slots);
+                    out.flush();
+                }
+                while (true) {
+                    byte type = in.readByte();
+                    joined = true;
+                    switch (type) {
+                        case ClusterProtocol.RUN -> {
+                            int seq = in.readInt();
+                            String className = ClusterProtocol.readString(in);
+                            String query = ClusterProtocol.readString(in);
+                            byte[] body = ClusterProtocol.readBytes(in);
+                            CancelToken token = new CancelToken();
+                            running.put(seq, token);
+                            pool.execute(() -> runRoute(seq, className, query, body, token));
+                        }
+                        case ClusterProtocol.CANCEL -> {
+                            CancelToken token = running.get(in.readInt());
+                            if (token != null) token.cancel();
+                        }
+                        case ClusterProtocol.PING -> {}
+                        default -> throw new IOException("Unknown frame type " + type);
+                    }
+                }
+            } finally {
+                closed = true;
+                pinger.interrupt();
+                for (CancelToken t : running.values()) t.cancel();
+            }
+        }
+
+        private void runRoute(int seq, String className, String query, byte[] body, CancelToken token) {
+            int exit = -1;
+            long spawnNanos = 0;
+            byte[] stderr;
+            try (OutputStream stdout = new BufferedOutputStream(new OutputFrames(seq))) {
+                try (RouteExecutorPort.StreamResult r = executor.execStreaming(className, query, body, () -> stdout, token)) {
+                    stdout.flush();
+                    exit = r.exit;
+                    spawnNanos = r.spawnNanos;
+                    ByteArrayOutputStream err = new ByteArrayOutputStream();
+                    r.stderr.writeTo(err);
+                    stderr = err.toByteArray();
+                }
+            } catch (IOException e) {
+                stderr = ("Exception: " + e + "\n").getBytes(StandardCharsets.UTF_8);
+            } finally {
+                running.remove(seq);
+            }
+            if (closed) return;
+            int len = Math.min(stderr.length, MAX_STDERR_BYTES);
+            try {
+                synchronized (out) {
+                    out.writeByte(ClusterProtocol.DONE);
+                    out.writeInt(seq);
+                    out.writeInt(exit);
+                    out.writeLong(spawnNanos);
+                    ClusterProtocol.writeBytes(out, stderr, 0, len);
+                    out.flush();
+                }
+            } catch (IOException ignored) {} // the read loop sees the broken connection too
+        }
+
+        private void ping() {
+            while (!closed) {
+                try {
+                    Thread.sleep(ClusterProtocol.HEARTBEAT_MS);
+                    synchronized (out) {
+                        out.writeByte(ClusterProtocol.PING);
+                        out.flush();
+                    }
+                } catch (InterruptedException | IOException e) {
+                    return;
+                }
+            }
+        }
+
+        // Turns each chunk the route's buffered stdout hands down into one OUTPUT frame.
+        private final class OutputFrames extends OutputStream {
+            private final int seq;
+
+            OutputFrames(int seq) {
+                this.seq = seq;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return;
+                if (closed) throw new IOException("Coordinator connection closed");
+                synchronized (out) {
+                    out.writeByte(ClusterProtocol.OUTPUT);
+                    out.writeInt(seq);
+                    ClusterProtocol.writeBytes(out, b, off, len);
+                    out.flush();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package adapters.out.cluster;
+
+import ports.CancelToken;
+import ports.ExecutorLostException;
+import ports.RouteExecutorPort;
+import ports.SpillBuffer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinator-side view of one connected {@link ClusterWorker}: a
+ * {@link RouteExecutorPort} whose routes run on that node. Stdout arrives in
+ * OUTPUT frames and is written to the caller's stream by the reader thread
+ * as it comes in; cancelling sends CANCEL. When the connection drops or the
+ * node stops answering, every call still in flight fails with
+ * {@link ExecutorLostException} so the job can be queued again.
+ */
+final class RemoteNode implements RouteExecutorPort {
+    // One route call in flight on the node.
+    private static final class Call {
+        final OutputOpener opener;
+        final CompletableFuture<StreamResult> done = new CompletableFuture<>();
+        OutputStream out;           // touched by the reader thread only
+        IOException failure;        // the caller's stream failed; the rest of the output is dropped
+
+        Call(OutputOpener opener) {
+            this.opener = opener;
+        }
+    }
+
+    final String name;
+    final int slots;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Map<Integer, Call> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger seq = new AtomicInteger();
+    private final List<Runnable> onDeath = new ArrayList<>();
+    private volatile boolean dead;
+
+    RemoteNode(Socket socket, DataInputStream in, String name, int slots) throws IOException {
+        this.socket = socket;
+        this.in = in;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.name = name;
+        this.slots = slots;
+    }
+
+    /** Reads frames from the node until it goes away; meant for a dedicated thread. */
+    void read() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case ClusterProtocol.OUTPUT -> output(in.readInt(), ClusterProtocol.readBytes(in));
+                    case ClusterProtocol.DONE -> done(in.readInt(), in.readInt(), in.readLong(), ClusterProtocol.readBytes(in));
+                    case ClusterProtocol.PING -> {}
+                    default -> throw new IOException("Unknown frame type " + type);
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            die("silent for " + ClusterProtocol.DEAD_AFTER_MS + " ms");
+        } catch (IOException e) {
+            die(e.toString());
+        }
+    }
+
+    boolean isDead() {
+        return dead;
+    }
+
+    int inFlight() {
+        return calls.size();
+    }
+
+    /** Runs {@code hook} once the node is lost (immediately if it already is). */
+    void onDeath(Runnable hook) {
+        synchronized (onDeath) {
+            if (!dead) {
+                onDeath.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    void ping() {
+        try {
+            send(o -> o.writeByte(ClusterProtocol.PING));
+        } catch (IOException e) {
+            die(e.toString());
+        }
+    }
+
+    @Override
+    public ExecResult execOnce(String className, String query) {
+        return execOnce(className, query, null);
+    }
+
+    @Override
+    public ExecResult execOnce(String className, String query, byte[] stdin) {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        try (StreamResult r = execStreaming(className, query, stdin, () -> stdout, CancelToken.NONE)) {
+            return new ExecResult(r.exit, stdout.toString(StandardCharsets.UTF_8), r.stderr.toString(), r.spawnNanos);
+        } catch (IOException e) {
+            return new ExecResult(-1, "", "Exception: " + e);
+        }
+    }
+
+    @Override
+    public StreamResult execStreaming(String className, String query, byte[] stdin,
+                                      OutputOpener stdout, CancelToken cancel) throws IOException {
+        int id = seq.incrementAndGet();
+        Call c = new Call(stdout);
+        calls.put(id, c);
+        if (dead) { // die() may have swept the calls before ours was added
+            calls.remove(id);
+            throw new ExecutorLostException("Node " + name + " is gone");
+        }
+        byte[] body = stdin == null ? new byte[0] : stdin;
+        try {
+            send(o -> {
+                o.writeByte(ClusterProtocol.RUN);
+                o.writeInt(id);
+                ClusterProtocol.writeString(o, className);
+                ClusterProtocol.writeString(o, query);
+                ClusterProtocol.writeBytes(o, body);
+            });
+        } catch (IOException e) {
+            die(e.toString());
+        }
+        cancel.onCancel(() -> {
+            try {
+                send(o -> {
+                    o.writeByte(ClusterProtocol.CANCEL);
+                    o.writeInt(id);
+                });
+            } catch (IOException ignored) {} // the reader notices the broken connection
+        });
+        try {
+            return waitFor(c.done);
+        } finally {
+            calls.remove(id);
+        }
+    }
+
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+
+    // ---- helpers ----
+    @FunctionalInterface
+    private interface Frame {
+        void write(DataOutputStream o) throws IOException;
+    }
+
+    private void send(Frame f) throws IOException {
+        synchronized (out) {
+            f.write(out);
+            out.flush();
+        }
+    }
+
+    private void output(int id, byte[] b) {
+        Call c = calls.get(id);
+        if (c == null || c.failure != null) return; // cancelled and forgotten, or the caller stopped listening
+        try {
+            if (c.out == null) c.out = c.opener.open();
+            c.out.write(b);
+            c.out.flush();
+        } catch (IOException e) {
+            c.failure = e;
+        }
+    }
+
+    private void done(int id, int exit, long spawnNanos, byte[] stderr) throws IOException {
+        Call c = calls.get(id);
+        if (c == null) return;
+        if (c.failure != null) {
+            c.done.completeExceptionally(c.failure);
+            return;
+        }
+        SpillBuffer err = new SpillBuffer();
+        err.write(stderr);
+        c.done.complete(new StreamResult(exit, err, spawnNanos));
+    }
+
+    private void die(String why) {
+        List<Runnable> hooks;
+        synchronized (onDeath) {
+            if (dead) return;
+            dead = true;
+            hooks = new ArrayList<>(onDeath);
+            onDeath.clear();
+        }
+        System.err.println("Cluster: lost node " + name + ": " + why);
+        close();
+        ExecutorLostException lost = new ExecutorLostException("Lost node " + name + ": " + why);
+        for (Call c : calls.values()) c.done.completeExceptionally(lost);
+        for (Runnable h : hooks) h.run();
+    }
+
+    // Uninterruptible: the call only ends with DONE or the node's death, both of which complete the future.
+    private static StreamResult waitFor(CompletableFuture<StreamResult> f) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return f.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) throw io;
+                    throw new IOException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package adapters.out.compiler;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps {@code build/} current for route sources without ever compiling on
+ * the request path. {@link #start()} compiles any route whose {@code .java}
+ * is newer than its {@code .class}, then a daemon thread watches
+ * {@code src/routes} and recompiles just the changed files with the in-process
+ * {@link JavaCompiler}. Listeners are told which classes were rebuilt so
+ * executors can drop stale state.
+ */
+public class RouteCompiler {
+    private static final long DEBOUNCE_MS = 150;
+
+    private final Path srcRoot;
+    private final Path routesDir;
+    private final Path outDir;
+    private final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    public RouteCompiler() {
+        this(Path.of("src"), Path.of("build"));
+    }
+
+    public RouteCompiler(Path srcRoot, Path outDir) {
+        this.srcRoot = srcRoot;
+        this.routesDir = srcRoot.resolve("routes");
+        this.outDir = outDir;
+    }
+
+    /**
+     * Registers a callback that receives the fully qualified names of the
+     * classes rebuilt by each successful background compile.
+     */
+    public void addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Compiles stale routes once and starts watching {@code src/routes}.
+     * Without a system compiler (e.g. running on a JRE) this only logs.
+     */
+    public void start() throws IOException {
+        if (javac == null) {
+            System.err.println("RouteCompiler: no system Java compiler available; routes will not be recompiled");
+            return;
+        }
+        if (!Files.isDirectory(routesDir)) return;
+
+        List<Path> stale = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(routesDir)) {
+            for (Path p : (Iterable<Path>) s.filter(f -> f.toString().endsWith(".java"))::iterator) {
+                if (isStale(p)) stale.add(p);
+            }
+        }
+        if (!stale.isEmpty()) compile(stale);
+
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        try (Stream<Path> s = Files.walk(routesDir)) {
+            for (Path dir : (Iterable<Path>) s.filter(Files::isDirectory)::iterator) register(ws, dir);
+        }
+        Thread t = new Thread(() -> watch(ws), "route-compiler");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Compiles the given sources into {@code build/}. Returns whether javac
+     * succeeded; diagnostics go to {@code System.err}. javac writes into a
+     * scratch directory beside the class root and each class is then renamed
+     * into place, so a route loaded mid-compile never reads a half-written
+     * {@code .class}.
+     */
+    public boolean compile(List<Path> sources) {
+        if (javac == null || sources.isEmpty()) return false;
+        Path tmp;
+        try {
+            Files.createDirectories(outDir);
+            tmp = Files.createTempDirectory(outDir, ".javac-");
+        } catch (IOException e) {
+            System.err.println("RouteCompiler: cannot create a scratch directory in " + outDir + ": " + e);
+            return false;
+        }
+        try {
+            List<String> args = new ArrayList<>(List.of("-d", tmp.toString(), "-cp", outDir.toString(),
+                    "-sourcepath", srcRoot.toString(), "-implicit:none"));
+            for (Path p : sources) args.add(p.toString());
+            ByteArrayOutputStream diag = new ByteArrayOutputStream();
+            int rc = javac.run(null, diag, diag, args.toArray(new String[0]));
+            String msg = diag.toString(StandardCharsets.UTF_8);
+            if (rc != 0 || !msg.isBlank()) {
+                System.err.println("RouteCompiler: javac " + (rc == 0 ? "warnings" : "failed (" + rc + ")") + " for " + sources);
+                System.err.print(msg);
+            }
+            if (rc != 0) return false;
+            install(tmp);
+            return true;
+        } catch (IOException e) {
+            System.err.println("RouteCompiler: installing classes for " + sources + " failed: " + e);
+            return false;
+        } finally {
+            deleteTree(tmp);
+        }
+    }
+
+    // ---- helpers ----
+    private void watch(WatchService ws) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = ws.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Set<Path> changed = new LinkedHashSet<>();
+            collect(ws, key, changed);
+            // Editors save in bursts; gather everything that lands shortly after.
+            try {
+                WatchKey more;
+                while ((more = ws.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) collect(ws, more, changed);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            List<Path> sources = new ArrayList<>();
+            for (Path p : changed) if (Files.isRegularFile(p)) sources.add(p);
+            if (sources.isEmpty() || !compile(sources)) continue;
+
+            Set<String> classes = new LinkedHashSet<>();
+            for (Path p : sources) classes.add(className(p));
+            for (Consumer<Set<String>> l : listeners) {
+                try {
+                    l.accept(classes);
+                } catch (RuntimeException e) {
+                    System.err.println("RouteCompiler: listener failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void collect(WatchService ws, WatchKey key, Set<Path> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+            Path p = dir.resolve((Path) ev.context());
+            if (Files.isDirectory(p)) {
+                try {
+                    register(ws, p);
+                } catch (IOException e) {
+                    System.err.println("RouteCompiler: cannot watch " + p + ": " + e);
+                }
+            } else if (p.toString().endsWith(".java")) {
+                changed.add(p);
+            }
+        }
+        key.reset();
+    }
+
+    // Renames every class javac wrote under `tmp` over its counterpart in the class root.
+    private void install(Path tmp) throws IOException {
+        List<Path> classes;
+        try (Stream<Path> s = Files.walk(tmp)) {
+            classes = s.filter(Files::isRegularFile).toList();
+        }
+        for (Path c : classes) {
+            Path target = outDir.resolve(tmp.relativize(c).toString());
+            Files.createDirectories(target.getParent());
+            Files.move(c, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            System.err.println("RouteCompiler: cannot delete " + dir + ": " + e);
+        }
+    }
+
+    private static void register(WatchService ws, Path dir) throws IOException {
+        dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private boolean isStale(Path source) throws IOException {
+        Path cls = outDir.resolve(srcRoot.relativize(source).toString().replaceAll("\\.java$", ".class"));
+        return !Files.exists(cls) || Files.getLastModifiedTime(source).compareTo(Files.getLastModifiedTime(cls)) > 0;
+    }
+
+    private String className(Path source) {
+        String rel = srcRoot.relativize(source).toString().replace('\\', '/');
+        return rel.substring(0, rel.length() - ".java".length()).replace('/', '.');
+    }
+}
@@ -0,0 +1,75 @@
+package adapters.out.process;
+
+import java.security.Permission;
+
+/**
+ * Turns {@code System.exit} calls made by a route into an {@link Exit}
+ * exception so a host that runs routes inside its own JVM survives them.
+ * Trapping is armed per thread (and inherited by threads the route starts);
+ * exits from anywhere else behave normally.
+ *
+ * <p>Relies on {@link SecurityManager}, so on JDKs where it can no longer be
+ * installed {@link #install()} returns {@code false} and exits are not trapped.
+ */
+@SuppressWarnings("removal")
+public final class ExitTrap extends SecurityManager {
+
+    /**
+     * Thrown from {@code System.exit} while the calling thread is armed.
+     */
+    public static final class Exit extends SecurityException {
+        private static final long serialVersionUID = 1L;
+
+        public final int status;
+
+        public Exit(int status) {
+            super("System.exit(" + status + ") trapped");
+            this.status = status;
+        }
+    }
+
+    private static final InheritableThreadLocal<Boolean> ARMED = new InheritableThreadLocal<>();
+    private static volatile boolean installed = false;
+
+    private ExitTrap() {
+    }
+
+    /**
+     * Installs the trap once per JVM. Returns whether exits can be trapped.
+     */
+    public static synchronized boolean install() {
+        if (installed) return true;
+        try {
+            System.setSecurityManager(new ExitTrap());
+            installed = true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            installed = false;
+        }
+        return installed;
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    public static void arm() {
+        ARMED.set(Boolean.TRUE);
+    }
+
+    public static void disarm() {
+        ARMED.remove();
+    }
+
+    @Override
+    public void checkExit(int status) {
+        if (Boolean.TRUE.equals(ARMED.get())) throw new Exit(status);
+    }
+
+    @Override
+    public void checkPermission(Permission perm) {
+    }
+
+    @Override
+    public void checkPermission(Permission perm, Object context) {
+    }
+}
@@ -0,0 +1,171 @@
+package adapters.out.process;
+
+import ports.CancelToken;
+import ports.RouteExecutorPort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@link RouteExecutorPort} that runs trusted routes inside the host JVM. Each
+ * route class gets its own {@link URLClassLoader} over {@code build/}, cached
+ * until the route's {@code .class} file changes, and its {@code main} runs on
+ * a fresh thread with stdio captured per invocation. {@code System.exit} is
+ * trapped and reported as the exit code; uncaught exceptions map to exit 1.
+ *
+ * <p>Routes outside the trusted set are delegated to {@code fallback}.
+ * Only the route's own class file is watched: a rebuilt helper such as
+ * {@code org.json.JSONObject} is picked up the next time the route changes.
+ */
+public class InProcessExecutor implements RouteExecutorPort {
+
+    private static final class Entry {
+        final URLClassLoader loader;
+        final long classMtime;
+
+        Entry(URLClassLoader loader, long classMtime) {
+            this.loader = loader;
+            this.classMtime = classMtime;
+        }
+    }
+
+    private final Set<String> trusted;
+    private final RouteExecutorPort fallback;
+    private final Path classesDir;
+    private final URL[] classpath;
+    private final ConcurrentMap<String, Entry> loaders = new ConcurrentHashMap<>();
+
+    public InProcessExecutor(Set<String> trusted, RouteExecutorPort fallback) {
+        this(trusted, fallback, Path.of("build"));
+    }
+
+    public InProcessExecutor(Set<String> trusted, RouteExecutorPort fallback, Path classesDir) {
+        this.trusted = Set.copyOf(trusted);
+        this.fallback = fallback;
+        this.classesDir = classesDir.toAbsolutePath().normalize();
+        try {
+            this.classpath = new URL[]{this.classesDir.toUri().toURL()};
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Bad classes dir: " + classesDir, e);
+        }
+        ThreadCapture.install();
+        if (!ExitTrap.install()) {
+            System.err.println("InProcessExecutor: System.exit cannot be trapped on this JVM; "
+                    + "a route calling it will stop the host");
+        }
+    }
+
+    @Override
+    public ExecResult execOnce(String className, String query) {
+        return execOnce(className, query, null);
+    }
+
+    /**
+     * Runs {@code className.main(query)} in-process; {@code body} is exposed
+     * to the route as {@code System.in}.
+     */
+    @Override
+    public ExecResult execOnce(String className, String query, byte[] body) {
+        if (!trusted.contains(className)) return fallback.execOnce(className, query, body);
+        return run(className, query, body, CancelToken.NONE);
+    }
+
+    /**
+     * Buffered like the port's default. A thread cannot be killed, so
+     * cancelling interrupts the route thread and stops waiting for it; a
+     * route that ignores interrupts keeps running detached until it returns.
+     */
+    @Override
+    public StreamResult execStreaming(String className, String query, byte[] stdin,
+                                      OutputOpener stdout, CancelToken cancel) throws IOException {
+        if (!trusted.contains(className)) return fallback.execStreaming(className, query, stdin, stdout, cancel);
+        return RouteExecutorPort.buffered(run(className, query, stdin, cancel), stdout);
+    }
+
+    /**
+     * Drops every cached class loader so the next call reloads from disk.
+     */
+    public void invalidateAll() {
+        loaders.clear();
+    }
+
+    // ---- helpers ----
+    private ExecResult run(String className, String query, byte[] body, CancelToken cancel) {
+        ClassLoader loader;
+        try {
+            loader = loaderFor(className);
+        } catch (IOException e) {
+            return new ExecResult(-1, "", "Exception: " + e);
+        }
+
+        ByteArrayOutputStream so = new ByteArrayOutputStream();
+        ByteArrayOutputStream se = new ByteArrayOutputStream();
+        ByteArrayInputStream si = new ByteArrayInputStream(body == null ? new byte[0] : body);
+        int[] exit = {-1};
+        boolean[] returned = {false};
+        CountDownLatch done = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            ThreadCapture.begin(so, se, si);
+            ExitTrap.arm();
+            try {
+                exit[0] = RouteWorker.invoke(loader, className, query);
+            } finally {
+                ExitTrap.disarm();
+                ThreadCapture.end();
+                returned[0] = true;
+                done.countDown();
+            }
+        }, "route-" + className);
+        t.setContextClassLoader(loader);
+        t.start();
+        cancel.onCancel(() -> {
+            t.interrupt();
+            done.countDown();
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            t.interrupt();
+            return new ExecResult(-1, "", "Interrupted while running " + className);
+        }
+        if (!returned[0]) return new ExecResult(-1, "", "Cancelled; " + t.getName() + " was interrupted");
+        return new ExecResult(exit[0], so.toString(StandardCharsets.UTF_8), se.toString(StandardCharsets.UTF_8));
+    }
+
+    private ClassLoader loaderFor(String className) throws IOException {
+        Path classFile = classesDir.resolve(className.replace('.', '/') + ".class");
+        long mtime;
+        try {
+            mtime = Files.getLastModifiedTime(classFile).toMillis();
+        } catch (NoSuchFileException missing) {
+            mtime = -1;
+        }
+        Entry e = loaders.get(className);
+        if (e != null && e.classMtime == mtime) return e.loader;
+        synchronized (loaders) {
+            e = loaders.get(className);
+            if (e != null && e.classMtime == mtime) return e.loader;
+            // Parent is the platform loader so route classes (and the helpers
+            // they use from build/) never resolve against the host's copies.
+            // A replaced loader is not closed: calls still running on it keep
+            // working and it is collected once they finish.
+            Entry fresh = new Entry(new URLClassLoader("route:" + className, classpath,
+                    ClassLoader.getPlatformClassLoader()), mtime);
+            loaders.put(className, fresh);
+            return fresh.loader;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package adapters.out.process;
+
+import ports.CancelToken;
+import ports.RouteExecutorPort;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Spawns {@code java -cp build <class> <query>} directly, one JVM per call.
+ * Unlike {@link MakeExecutor} there is no {@code make} parent and no compile
+ * step on the hot path; classes are expected to be up to date in
+ * {@code build/} (see {@code adapters.out.compiler.RouteCompiler}).
+ */
+public class JavaExecutor implements RouteExecutorPort {
+    private final String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    @Override
+    public ExecResult execOnce(String className, String query) {
+        return execOnce(className, query, null);
+    }
+
+    @Override
+    public ExecResult execOnce(String className, String query, byte[] stdin) {
+        return ProcessIo.run(command(className, query), stdin);
+    }
+
+    @Override
+    public StreamResult execStreaming(String className, String query, byte[] stdin,
+                                      OutputOpener stdout, CancelToken cancel) throws IOException {
+        return ProcessIo.stream(command(className, query), stdin, stdout, cancel);
+    }
+
+    private List<String> command(String className, String query) {
+        return List.of(java, "-cp", "build", className, query);
+    }
+}
@@ -1,28 +1,29 @@
 package adapters.out.process;
 
+import ports.CancelToken;
 import ports.RouteExecutorPort;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.List;
 
 public class MakeExecutor implements RouteExecutorPort {
     @Override
     public ExecResult execOnce(String className, String query) {
-        try {
-            List<String> cmd = List.of("make", "-s", "run", "CLASS=" + className, "Q=" + query);
-            Process p = new ProcessBuilder(cmd).start();
-            String out, err;
-            try (BufferedReader ro = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
-                 BufferedReader re = new BufferedReader(new InputStreamReader(p.getErrorStream(), StandardCharsets.UTF_8))) {
-                out = ro.lines().reduce(new StringBuilder(), (b, s) -> b.append(s).append('\n'), StringBuilder::append).toString();
-                err = re.lines().reduce(new StringBuilder(), (b, s) -> b.append(s).append('\n'), StringBuilder::append).toString();
-            }
-            int exit = p.waitFor();
-            return new ExecResult(exit, out, err);
-        } catch (Exception e) {
-            return new ExecResult(-1, "", "Exception: " + e);
-        }
+        return execOnce(className, query, null);
+    }
+
+    @Override
+    public ExecResult execOnce(String className, String query, byte[] stdin) {
+        return ProcessIo.run(command(className, query), stdin);
+    }
+
+    @Override
+    public StreamResult execStreaming(String className, String query, byte[] stdin,
+                                      OutputOpener stdout, CancelToken cancel) throws IOException {
+        return ProcessIo.stream(command(className, query), stdin, stdout, cancel);
+    }
+
+    private static List<String> command(String className, String query) {
+        return List.of("make", "-s", "run", "CLASS=" + className, "Q=" + query);
     }
 }
@@ -0,0 +1,147 @@
+package adapters.out.process;
+
+import ports.CancelToken;
+import ports.RouteExecutorPort.ExecResult;
+import ports.RouteExecutorPort.OutputOpener;
+import ports.RouteExecutorPort.StreamResult;
+import ports.SpillBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a route command and drains stdout and stderr at the same time, so a
+ * route that fills its stderr pipe can never block on a host that is still
+ * reading stdout (or the other way round). The request body, if any, is fed
+ * to the route's stdin from another thread for the same reason.
+ * <p>
+ * The spawn time reported runs from {@code ProcessBuilder.start()} to the
+ * first byte the route writes on either pipe (or its exit, if it writes
+ * none), so it covers fork/exec, JVM startup and class loading; a route that
+ * works for long before its first write is charged that time here too.
+ */
+final class ProcessIo {
+    private ProcessIo() {}
+
+    private static final ExecutorService DRAINERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "route-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static ExecResult run(List<String> cmd, byte[] stdin) {
+        try {
+            long t0 = System.nanoTime();
+            Process p = new ProcessBuilder(cmd).start();
+            AtomicLong first = new AtomicLong();
+            feed(p, stdin);
+            Future<byte[]> err = DRAINERS.submit(() -> {
+                ByteArrayOutputStream b = new ByteArrayOutputStream();
+                try (InputStream in = p.getErrorStream()) { copy(in, b, first); }
+                return b.toByteArray();
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = p.getInputStream()) { copy(in, out, first); }
+            int exit = p.waitFor();
+            byte[] errBytes = err.get();
+            return new ExecResult(exit, out.toString(StandardCharsets.UTF_8),
+                    new String(errBytes, StandardCharsets.UTF_8), spawnNanos(t0, first));
+        } catch (Exception e) {
+            return new ExecResult(-1, "", "Exception: " + e);
+        }
+    }
+
+    /**
+     * Copies stdout to the stream from {@code opener} as soon as bytes arrive,
+     * flushing whenever the pipe runs dry. If writing fails (typically the
+     * client went away) the process is killed and the exception rethrown.
+     * Cancelling kills the whole process tree; the call then returns the
+     * exit status of the killed process as usual.
+     */
+    static StreamResult stream(List<String> cmd, byte[] stdin, OutputOpener opener,
+                               CancelToken cancel) throws IOException {
+        long t0 = System.nanoTime();
+        Process p = new ProcessBuilder(cmd).start();
+        AtomicLong first = new AtomicLong();
+        cancel.onCancel(() -> killTree(p));
+        feed(p, stdin);
+        SpillBuffer err = new SpillBuffer();
+        Future<?> drain = DRAINERS.submit(() -> {
+            try (InputStream in = p.getErrorStream()) { copy(in, err, first); }
+            return null;
+        });
+        boolean ok = false;
+        try (InputStream in = p.getInputStream()) {
+            byte[] buf = new byte[8192];
+            OutputStream out = null;
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                if (out == null) {
+                    first.compareAndSet(0, System.nanoTime());
+                    out = opener.open();
+                }
+                out.write(buf, 0, n);
+                if (in.available() == 0) out.flush();
+            }
+            int exit = p.waitFor();
+            drain.get();
+            ok = true;
+            return new StreamResult(exit, err, spawnNanos(t0, first));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming " + cmd, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Draining stderr failed", e.getCause());
+        } finally {
+            if (!ok) {
+                killTree(p);
+                err.close();
+            }
+        }
+    }
+
+    // Copies a pipe to `to`, stamping `first` with the time its first byte arrived unless the other pipe won.
+    private static void copy(InputStream in, OutputStream to, AtomicLong first) throws IOException {
+        int b = in.read();
+        if (b < 0) return;
+        first.compareAndSet(0, System.nanoTime());
+        to.write(b);
+        in.transferTo(to);
+    }
+
+    // From start() to the first output byte, or to now for a route that printed nothing.
+    private static long spawnNanos(long t0, AtomicLong first) {
+        long at = first.get();
+        return (at == 0 ? System.nanoTime() : at) - t0;
+    }
+
+    // Children first: once `make` dies its `java` child is reparented and no longer a descendant.
+    static void killTree(Process p) {
+        p.descendants().forEach(ProcessHandle::destroyForcibly);
+        p.destroyForcibly();
+    }
+
+    // Writes the body off-thread: a route that never reads stdin must not stall the host.
+    private static void feed(Process p, byte[] stdin) throws IOException {
+        if (stdin == null || stdin.length == 0) {
+            p.getOutputStream().close();
+            return;
+        }
+        DRAINERS.execute(() -> {
+            try (OutputStream os = p.getOutputStream()) {
+                os.write(stdin);
+            } catch (IOException ignored) {
+                // the route exited without reading its body
+            }
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package adapters.out.process;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entry point of the long-lived JVMs managed by {@link WorkerPoolExecutor}.
+ * Reads one framed request at a time from stdin, runs the route's
+ * {@code main(String[])} in this JVM with {@code System.out}/{@code System.err}
+ * captured, and writes a framed result back on stdout. Exits when stdin closes.
+ */
+public final class RouteWorker {
+    private RouteWorker() {}
+
+    public static void main(String[] args) throws IOException {
+        // Keep the real pipes for framing; routes only ever see the capture streams.
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        PrintStream realErr = System.err;
+        InputStream realIn = System.in;
+        System.setOut(realErr);
+        ExitTrap.install();
+
+        while (true) {
+            String className;
+            String query;
+            byte[] body;
+            try {
+                className = WorkerProtocol.readString(in);
+                query = WorkerProtocol.readString(in);
+                body = WorkerProtocol.readBytes(in);
+            } catch (EOFException eof) {
+                break;
+            }
+
+            ByteArrayOutputStream so = new ByteArrayOutputStream();
+            ByteArrayOutputStream se = new ByteArrayOutputStream();
+            PrintStream po = new PrintStream(so, true, StandardCharsets.UTF_8);
+            PrintStream pe = new PrintStream(se, true, StandardCharsets.UTF_8);
+            System.setOut(po);
+            System.setErr(pe);
+            System.setIn(new ByteArrayInputStream(body));
+            int exit = 0;
+            try {
+                ExitTrap.arm();
+                exit = invoke(RouteWorker.class.getClassLoader(), className, query);
+            } finally {
+                ExitTrap.disarm();
+                po.flush();
+                pe.flush();
+                // stdout carries frames, so stray writes from lingering route threads go to stderr
+                System.setOut(realErr);
+                System.setErr(realErr);
+                System.setIn(realIn);
+            }
+
+            out.writeInt(exit);
+            WorkerProtocol.writeBytes(out, so.toByteArray());
+            WorkerProtocol.writeBytes(out, se.toByteArray());
+            out.flush();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs {@code className.main(query)}, loaded through {@code loader}, on
+     * the current thread and maps the outcome to a process-style exit code,
+     * printing failures to {@code System.err} the way the {@code java}
+     * launcher would.
+     */
+    static int invoke(ClassLoader loader, String className, String query) {
+        Method main;
+        try {
+            main = Class.forName(className, true, loader).getMethod("main", String[].class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            System.err.println("Error: Could not find or load main class " + className);
+            System.err.println("Caused by: " + e);
+            return 1;
+        }
+        try {
+            main.invoke(null, (Object) new String[]{query});
+            return 0;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExitTrap.Exit exit) return exit.status;
+            System.err.print("Exception in thread \"main\" ");
+            cause.printStackTrace();
+            return 1;
+        } catch (ExitTrap.Exit exit) {
+            return exit.status;
+        } catch (IllegalAccessException e) {
+            System.err.println("Error: main method is not accessible in class " + className);
+            return 1;
+        }
+    }
+}
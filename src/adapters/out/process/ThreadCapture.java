@@ -0,0 +1,81 @@
+package adapters.out.process;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replaces {@code System.out}, {@code System.err} and {@code System.in} with
+ * streams that dispatch on the calling thread, so several routes running in
+ * one JVM each see their own stdio. Threads without a capture (and threads
+ * they start) keep using the original streams.
+ */
+final class ThreadCapture {
+    private ThreadCapture() {}
+
+    private static final class Target {
+        final OutputStream out;
+        final OutputStream err;
+        final InputStream in;
+
+        Target(OutputStream out, OutputStream err, InputStream in) {
+            this.out = out;
+            this.err = err;
+            this.in = in;
+        }
+    }
+
+    private static final InheritableThreadLocal<Target> CURRENT = new InheritableThreadLocal<>();
+    private static boolean installed = false;
+
+    static synchronized void install() {
+        if (installed) return;
+        PrintStream origOut = System.out;
+        PrintStream origErr = System.err;
+        InputStream origIn = System.in;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override public void write(int b) throws IOException { out(origOut).write(b); }
+            @Override public void write(byte[] b, int off, int len) throws IOException { out(origOut).write(b, off, len); }
+            @Override public void flush() throws IOException { out(origOut).flush(); }
+        }, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(new OutputStream() {
+            @Override public void write(int b) throws IOException { err(origErr).write(b); }
+            @Override public void write(byte[] b, int off, int len) throws IOException { err(origErr).write(b, off, len); }
+            @Override public void flush() throws IOException { err(origErr).flush(); }
+        }, true, StandardCharsets.UTF_8));
+        System.setIn(new InputStream() {
+            @Override public int read() throws IOException { return in(origIn).read(); }
+            @Override public int read(byte[] b, int off, int len) throws IOException { return in(origIn).read(b, off, len); }
+            @Override public int available() throws IOException { return in(origIn).available(); }
+        });
+        installed = true;
+    }
+
+    /** Routes the current thread's stdio (and that of threads it starts) to the given streams. */
+    static void begin(OutputStream out, OutputStream err, InputStream in) {
+        CURRENT.set(new Target(out, err, in));
+    }
+
+    static void end() {
+        System.out.flush();
+        System.err.flush();
+        CURRENT.remove();
+    }
+
+    private static OutputStream out(OutputStream fallback) {
+        Target t = CURRENT.get();
+        return t == null ? fallback : t.out;
+    }
+
+    private static OutputStream err(OutputStream fallback) {
+        Target t = CURRENT.get();
+        return t == null ? fallback : t.err;
+    }
+
+    private static InputStream in(InputStream fallback) {
+        Target t = CURRENT.get();
+        return t == null ? fallback : t.in;
+    }
+}
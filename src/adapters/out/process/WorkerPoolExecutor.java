@@ -0,0 +1,236 @@
+package adapters.out.process;
+
+import ports.CancelToken;
+import ports.RouteExecutorPort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RouteExecutorPort} backed by a pool of warm worker JVMs running
+ * {@link RouteWorker}. Each call borrows one idle worker (spawning a new one
+ * while the pool is below {@code maxWorkers}), exchanges a single framed
+ * request/response over the worker's stdin/stdout and hands it back.
+ *
+ * <p>Workers are recycled after {@code maxRequestsPerWorker} calls, when they
+ * crash, and after {@link #recycle()} (e.g. once route classes were rebuilt,
+ * since a warm JVM keeps the classes it already loaded).
+ */
+public class WorkerPoolExecutor implements RouteExecutorPort, AutoCloseable {
+
+    /**
+     * Immutable snapshot of one live worker.
+     */
+    public static final class WorkerStats {
+        public final long pid;
+        public final int requests;
+        public final boolean busy;
+
+        public WorkerStats(long pid, int requests, boolean busy) {
+            this.pid = pid;
+            this.requests = requests;
+            this.busy = busy;
+        }
+    }
+
+    private static final class Worker {
+        final Process process;
+        final DataOutputStream in;
+        final DataInputStream out;
+        final int generation;
+        volatile int requests = 0;
+        volatile boolean busy = false;
+
+        Worker(Process process, int generation) {
+            this.process = process;
+            this.in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.generation = generation;
+        }
+
+        ExecResult call(String className, String query, byte[] body) throws IOException {
+            WorkerProtocol.writeString(in, className);
+            WorkerProtocol.writeString(in, query);
+            WorkerProtocol.writeBytes(in, body);
+            in.flush();
+            int exit = out.readInt();
+            String stdout = new String(WorkerProtocol.readBytes(out), StandardCharsets.UTF_8);
+            String stderr = new String(WorkerProtocol.readBytes(out), StandardCharsets.UTF_8);
+            requests++;
+            return new ExecResult(exit, stdout, stderr);
+        }
+    }
+
+    private final int maxWorkers;
+    private final int maxRequestsPerWorker;
+    private final List<String> command;
+    private final Semaphore permits;
+    private final BlockingDeque<Worker> idle = new LinkedBlockingDeque<>();
+    private final Set<Worker> live = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    public WorkerPoolExecutor() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()), 1000);
+    }
+
+    public WorkerPoolExecutor(int maxWorkers, int maxRequestsPerWorker) {
+        if (maxWorkers < 1) throw new IllegalArgumentException("maxWorkers must be >= 1");
+        if (maxRequestsPerWorker < 1) throw new IllegalArgumentException("maxRequestsPerWorker must be >= 1");
+        this.maxWorkers = maxWorkers;
+        this.maxRequestsPerWorker = maxRequestsPerWorker;
+        this.permits = new Semaphore(maxWorkers, true);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        this.command = List.of(java, "-Djava.security.manager=allow", "-cp", "build",
+                RouteWorker.class.getName());
+    }
+
+    @Override
+    public ExecResult execOnce(String className, String query) {
+        return execOnce(className, query, null);
+    }
+
+    /**
+     * Runs one route on a pooled worker, blocking while all
+     * {@code maxWorkers} workers are busy. {@code body} is exposed to the
+     * route as {@code System.in}.
+     */
+    @Override
+    public ExecResult execOnce(String className, String query, byte[] body) {
+        return run(className, query, body, CancelToken.NONE);
+    }
+
+    /**
+     * Buffered like the port's default, but cancelling kills the worker
+     * running the route (and anything it spawned); the pool replaces it.
+     */
+    @Override
+    public StreamResult execStreaming(String className, String query, byte[] stdin,
+                                      OutputOpener stdout, CancelToken cancel) throws IOException {
+        return RouteExecutorPort.buffered(run(className, query, stdin, cancel), stdout);
+    }
+
+    /**
+     * Retires every worker; idle ones immediately, busy ones when their
+     * current request completes.
+     */
+    public void recycle() {
+        generation.incrementAndGet();
+        Worker w;
+        while ((w = idle.pollFirst()) != null) retire(w);
+    }
+
+    /**
+     * Returns a snapshot of the live workers and their request counts.
+     */
+    public List<WorkerStats> getWorkers() {
+        List<WorkerStats> stats = new ArrayList<>();
+        for (Worker w : live) stats.add(new WorkerStats(w.process.pid(), w.requests, w.busy));
+        return Collections.unmodifiableList(stats);
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        recycle();
+        for (Worker w : live) retire(w);
+    }
+
+    // ---- helpers ----
+    private ExecResult run(String className, String query, byte[] body, CancelToken cancel) {
+        if (closed) return new ExecResult(-1, "", "Worker pool is closed");
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ExecResult(-1, "", "Interrupted while waiting for a worker");
+        }
+        Worker w = null;
+        boolean[] active = {true};
+        try {
+            long t0 = System.nanoTime();
+            w = borrow(); // spawn time here is ~0 unless a new worker JVM had to be started
+            long spawn = System.nanoTime() - t0;
+            Worker mine = w;
+            // The token outlives this call; only kill the worker while it still runs our route.
+            cancel.onCancel(() -> {
+                synchronized (active) {
+                    if (active[0]) ProcessIo.killTree(mine.process);
+                }
+            });
+            ExecResult r = w.call(className, query, body == null ? new byte[0] : body);
+            synchronized (active) { active[0] = false; }
+            giveBack(w);
+            return new ExecResult(r.exit, r.stdout, r.stderr, spawn);
+        } catch (IOException e) {
+            synchronized (active) { active[0] = false; }
+            if (w == null) return new ExecResult(-1, "", "Exception: " + e);
+            retire(w);
+            if (cancel.isCancelled()) return new ExecResult(-1, "", "Cancelled; worker " + w.process.pid() + " killed");
+            String status = w.process.isAlive() ? "" : " (exit " + w.process.exitValue() + ")";
+            return new ExecResult(-1, "", "Worker " + w.process.pid() + " crashed" + status + ": " + e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Worker borrow() throws IOException {
+        Worker w;
+        while ((w = idle.pollFirst()) != null) {
+            if (w.process.isAlive() && w.generation == generation.get()) break;
+            retire(w);
+        }
+        if (w == null) w = spawn();
+        w.busy = true;
+        return w;
+    }
+
+    private void giveBack(Worker w) {
+        w.busy = false;
+        if (closed || w.requests >= maxRequestsPerWorker || w.generation != generation.get()) {
+            retire(w);
+        } else {
+            idle.offerFirst(w); // LIFO keeps the hottest JVMs busy
+        }
+    }
+
+    private Worker spawn() throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Worker w = new Worker(pb.start(), generation.get());
+        live.add(w);
+        return w;
+    }
+
+    private void retire(Worker w) {
+        live.remove(w);
+        idle.remove(w);
+        try {
+            w.in.close(); // EOF on stdin lets the worker exit on its own
+        } catch (IOException ignored) {}
+        // Give it a moment to drain, then make sure it is gone.
+        CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS).execute(() -> {
+            if (w.process.isAlive()) w.process.destroyForcibly();
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package adapters.out.process;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length-prefixed framing shared by {@link WorkerPoolExecutor} and
+ * {@link RouteWorker}.
+ *
+ * <pre>
+ * request:  [len][className utf-8] [len][query utf-8] [len][body bytes]
+ * response: [exit] [len][stdout bytes] [len][stderr bytes]
+ * </pre>
+ * All integers are big-endian 32-bit values as written by {@link DataOutputStream}.
+ */
+final class WorkerProtocol {
+    private WorkerProtocol() {}
+
+    static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) throw new IOException("Negative frame length: " + len);
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return b;
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,153 @@
+package app;
+
+import domain.JobPriority;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Jobs submitted together, optionally wired into a DAG. A node listed in
+ * another's {@code after} must finish with exit 0 before the other is
+ * queued, and the stdout of its inputs (concatenated in {@code after} order)
+ * becomes its request body. Nodes whose inputs did not succeed are SKIPPED.
+ * A node only becomes a {@link domain.Job} once it is ready to run; until
+ * then it waits here, with {@link Node#held} describing it.
+ */
+public final class JobBatch {
+    public static final int MAX_NODES = 256;
+
+    public enum State { RUNNING, DONE, FAILED, CANCELLED }
+
+    /** One requested job; {@code query} is already augmented (e.g. with __sid). */
+    public static final class Spec {
+        public final String id;
+        public final String className;
+        public final String query;
+        public final byte[] body;
+        public final JobPriority priority;
+        public final long timeoutMs;
+        public final List<String> after;
+
+        public Spec(String id, String className, String query, byte[] body, JobPriority priority, long timeoutMs,
+                    List<String> after) {
+            this.id = id;
+            this.className = className;
+            this.query = query;
+            this.body = body;
+            this.priority = priority;
+            this.timeoutMs = timeoutMs;
+            this.after = List.copyOf(after);
+        }
+    }
+
+    public static final class Node {
+        public final Spec spec;
+        final JobBatch batch;
+        final List<Node> inputs = new ArrayList<>();
+        final List<Node> dependents = new ArrayList<>();
+        int pending;                              // inputs not finished yet; guarded by the batch
+
+        /** Id of the node's job once queued, otherwise null. */
+        public volatile String jobId;
+        /** WAITING, SKIPPED, CANCELLED or FAILED while no job exists; null once one does. */
+        public volatile String held = WAITING;
+        /** Why a held node never ran. */
+        public volatile String error;
+
+        Node(JobBatch batch, Spec spec) {
+            this.batch = batch;
+            this.spec = spec;
+        }
+    }
+
+    static final String WAITING = "WAITING";
+
+    public final String id = UUID.randomUUID().toString();
+    public final String sid;
+    public final long createdMs = System.currentTimeMillis();
+    public volatile long endMs = 0;
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    int remaining;          // nodes not final yet; guarded by this
+    boolean failed;         // guarded by this
+    boolean cancelled;      // guarded by this
+
+    /** Links the specs into a graph; throws IllegalArgumentException for duplicates, unknown inputs or cycles. */
+    JobBatch(String sid, List<Spec> specs) {
+        this.sid = sid == null ? "" : sid;
+        if (specs.isEmpty()) throw new IllegalArgumentException("A batch needs at least one job");
+        if (specs.size() > MAX_NODES) throw new IllegalArgumentException("A batch holds at most " + MAX_NODES + " jobs");
+        for (Spec s : specs) {
+            if (nodes.put(s.id, new Node(this, s)) != null) throw new IllegalArgumentException("Duplicate job id " + s.id);
+        }
+        for (Node n : nodes.values()) {
+            if (!n.spec.after.isEmpty() && n.spec.body != null && n.spec.body.length > 0) {
+                throw new IllegalArgumentException("Job " + n.spec.id + " takes its body from 'after'; drop 'body'");
+            }
+            for (String in : n.spec.after) {
+                Node input = nodes.get(in);
+                if (input == null) throw new IllegalArgumentException("Job " + n.spec.id + " is after unknown job " + in);
+                if (n.inputs.contains(input)) continue;
+                n.inputs.add(input);
+                input.dependents.add(n);
+            }
+            n.pending = n.inputs.size();
+        }
+        requireAcyclic();
+        remaining = nodes.size();
+    }
+
+    public Collection<Node> nodes() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    public synchronized int remaining() {
+        return remaining;
+    }
+
+    public synchronized State state() {
+        if (remaining > 0) return State.RUNNING;
+        if (cancelled) return State.CANCELLED;
+        return failed ? State.FAILED : State.DONE;
+    }
+
+    // ---- helpers ----
+    List<Node> roots() {
+        List<Node> out = new ArrayList<>();
+        for (Node n : nodes.values()) if (n.inputs.isEmpty()) out.add(n);
+        return out;
+    }
+
+    // Called with the batch lock held.
+    void nodeFinished(boolean ok) {
+        if (!ok) failed = true;
+        if (--remaining == 0) endMs = System.currentTimeMillis();
+    }
+
+    // Kahn's algorithm: whatever is never freed sits on a cycle.
+    private void requireAcyclic() {
+        Map<Node, Integer> indegree = new LinkedHashMap<>();
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node n : nodes.values()) {
+            indegree.put(n, n.inputs.size());
+            if (n.inputs.isEmpty()) ready.add(n);
+        }
+        int seen = 0;
+        while (!ready.isEmpty()) {
+            Node n = ready.poll();
+            seen++;
+            for (Node d : n.dependents) if (indegree.merge(d, -1, Integer::sum) == 0) ready.add(d);
+        }
+        if (seen == nodes.size()) return;
+        List<String> cycle = new ArrayList<>();
+        indegree.forEach((n, deg) -> { if (deg > 0) cycle.add(n.spec.id); });
+        throw new IllegalArgumentException("Jobs form a cycle: " + String.join(", ", cycle));
+    }
+}
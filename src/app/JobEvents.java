@@ -0,0 +1,58 @@
+package app;
+
+import domain.Job;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fan-out of job changes to live subscribers, keyed by job id and by sid.
+ * {@link JobService} publishes on every state transition and whenever a
+ * running job's stdout file grows; subscribers tail the file themselves from
+ * their own offset, so a notification carries no payload beyond the job.
+ */
+public class JobEvents {
+
+    @FunctionalInterface
+    public interface Listener {
+        /** Called on the publishing thread; must not block. */
+        void changed(Job j);
+    }
+
+    private final ConcurrentMap<String, Set<Listener>> byId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Listener>> bySid = new ConcurrentHashMap<>();
+
+    /** Subscribes to one job. Run the returned handle to unsubscribe. */
+    public Runnable subscribeJob(String id, Listener l) {
+        return subscribe(byId, id, l);
+    }
+
+    /** Subscribes to every job started with {@code sid}. Run the returned handle to unsubscribe. */
+    public Runnable subscribeSid(String sid, Listener l) {
+        return subscribe(bySid, sid, l);
+    }
+
+    void publish(Job j) {
+        notify(byId.get(j.id), j);
+        if (!j.sid.isEmpty()) notify(bySid.get(j.sid), j);
+    }
+
+    // ---- helpers ----
+    private static Runnable subscribe(ConcurrentMap<String, Set<Listener>> m, String key, Listener l) {
+        m.compute(key, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(l);
+            return set;
+        });
+        return () -> m.computeIfPresent(key, (k, set) -> {
+            set.remove(l);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static void notify(Set<Listener> listeners, Job j) {
+        if (listeners == null) return;
+        for (Listener l : listeners) l.changed(j);
+    }
+}
@@ -0,0 +1,473 @@
+package app;
+
+import domain.Job;
+import domain.JobPriority;
+import domain.JobState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record of job transitions, so queued and running jobs survive
+ * a restart. Records go into memory-mapped segments
+ * ({@code journal-<gen>.log}, {@link #SEGMENT_BYTES} each) as
+ * {@code [len][crc32][payload]}; a zero length or a bad checksum ends a
+ * segment. One committer thread forces whatever was appended since its last
+ * pass, so a burst of enqueues waiting on durability shares a handful of
+ * fsyncs (group commit). Only enqueues wait; starts and finishes ride along
+ * with the next sync.
+ * <p>
+ * Whenever a segment fills up, every {@link #COMPACT_INTERVAL_MS}, and at
+ * startup, the state of the {@link JobStore} is written to
+ * {@code snapshot-<gen>.bin} (same record format) and the segments it covers
+ * are deleted. Replay reads the newest snapshot, then every later segment.
+ * Records are applied idempotently, so a snapshot that already reflects some
+ * records of the next segment is harmless.
+ */
+public class JobJournal {
+    static final int SEGMENT_BYTES = 16 << 20;
+    static final long COMPACT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final byte ENQUEUE = 1;
+    private static final byte DISCARD = 2;
+    private static final byte START = 3;
+    private static final byte FINISH = 4;
+    private static final int HEADER = 8;
+    private static final JobState[] STATES = JobState.values();
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+
+    /** What {@link #replay()} found: finished jobs, and jobs to run again in the order they were queued. */
+    static final class Recovery {
+        final List<Job> finished = new ArrayList<>();
+        final List<Job> pending = new ArrayList<>();
+    }
+
+    private static final class Segment {
+        final long gen;
+        final FileChannel channel;
+        final MappedByteBuffer map;
+        int synced;             // bytes known to be on disk; guarded by the journal lock
+
+        Segment(long gen, FileChannel channel, MappedByteBuffer map) {
+            this.gen = gen;
+            this.channel = channel;
+            this.map = map;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final Object lock = new Object();
+    private JobStore store;
+    private Segment segment;    // guarded by lock
+    private long nextGen = 1;
+    private long written;       // bytes appended since startup; guarded by lock
+    private long synced;        // of those, bytes forced to disk; guarded by lock
+    private boolean failed;     // guarded by lock
+    private long records, syncs, snapshots; // guarded by lock
+    private ScheduledExecutorService compactor;
+
+    public JobJournal(Path dir) {
+        this(dir, SEGMENT_BYTES);
+    }
+
+    JobJournal(Path dir, int segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /** A journal that records nothing and recovers nothing. */
+    public static JobJournal disabled() {
+        return new JobJournal(null);
+    }
+
+    // ---- lifecycle (JobService) ----
+    /** Reads the newest snapshot and every segment after it. */
+    Recovery replay() {
+        Recovery r = new Recovery();
+        if (dir == null) return r;
+        Map<String, Job> jobs = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(dir);
+            TreeMap<Long, Path> segments = list("journal-", ".log");
+            TreeMap<Long, Path> snaps = list("snapshot-", ".bin");
+            long from = 0;
+            if (!snaps.isEmpty()) {
+                from = snaps.lastKey();
+                read(snaps.lastEntry().getValue(), jobs);
+            }
+            for (Map.Entry<Long, Path> e : segments.tailMap(from, true).entrySet()) read(e.getValue(), jobs);
+            long last = Math.max(segments.isEmpty() ? 0 : segments.lastKey(), snaps.isEmpty() ? 0 : snaps.lastKey());
+            nextGen = last + 1;
+        } catch (IOException e) {
+            System.err.println("JobJournal: replaying " + dir + " failed: " + e);
+        }
+        for (Job j : jobs.values()) {
+            if (j.state.isFinal()) r.finished.add(j);
+            else r.pending.add(j);
+        }
+        r.pending.sort(Comparator.comparingLong(j -> j.queuedMs));
+        return r;
+    }
+
+    /**
+     * Opens a fresh segment, compacts everything replayed into a snapshot and
+     * starts the committer. Call once, after {@link #replay()} and after the
+     * recovered jobs are back in {@code store}.
+     */
+    void start(JobStore store) {
+        if (dir == null) return;
+        this.store = store;
+        synchronized (lock) {
+            try {
+                segment = open(nextGen++, segmentBytes);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-journal-compact");
+            t.setDaemon(true);
+            return t;
+        });
+        long gen = segment.gen;
+        compactor.execute(() -> compact(gen));
+        compactor.scheduleWithFixedDelay(this::compactIfWritten, COMPACT_INTERVAL_MS, COMPACT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        Thread t = new Thread(this::commit, "job-journal");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ---- records ----
+    /** Records a new job and waits until the record is on disk. */
+    void enqueued(Job j) {
+        long end = append(encode(ENQUEUE, j));
+        if (end < 0) return;
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (synced < end && !failed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** Records that a job recorded by {@link #enqueued} was never accepted. */
+    void discarded(Job j) {
+        append(encode(DISCARD, j));
+    }
+
+    void started(Job j) {
+        append(encode(START, j));
+    }
+
+    void finished(Job j) {
+        append(encode(FINISH, j));
+    }
+
+    void writeMetrics(StringBuilder sb) {
+        if (dir == null) return;
+        long r, s, n, w;
+        synchronized (lock) {
+            r = records;
+            s = syncs;
+            n = snapshots;
+            w = written;
+        }
+        Metrics.counter(sb, "cgiplus_journal_records_total", "Job transitions appended to the journal.", r);
+        Metrics.counter(sb, "cgiplus_journal_bytes_total", "Bytes appended to the journal.", w);
+        Metrics.counter(sb, "cgiplus_journal_syncs_total", "Journal group commits forced to disk.", s);
+        Metrics.counter(sb, "cgiplus_journal_snapshots_total", "Snapshots the journal was compacted into.", n);
+    }
+
+    // ---- helpers ----
+    // Appends one record; returns the logical offset the caller waits on, or -1 when journaling is off.
+    private long append(byte[] payload) {
+        if (dir == null) return -1;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        synchronized (lock) {
+            if (failed || segment == null) return -1;
+            int size = HEADER + payload.length;
+            if (segment.map.position() + size > segment.map.capacity()) {
+                try {
+                    roll(size);
+                } catch (IOException e) {
+                    fail(e);
+                    return -1;
+                }
+            }
+            segment.map.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            written += size;
+            records++;
+            lock.notifyAll();
+            return written;
+        }
+    }
+
+    // With the lock held: seal the full segment and map the next one, sized for at least `size` bytes.
+    private void roll(int size) throws IOException {
+        Segment old = segment;
+        old.map.force(old.synced, old.map.position() - old.synced);
+        old.channel.close();
+        synced = written;
+        syncs++;
+        lock.notifyAll();
+        segment = open(nextGen++, Math.max(segmentBytes, size));
+        long gen = segment.gen;
+        compactor.execute(() -> compact(gen));
+    }
+
+    // The committer: force whatever was appended since the last pass, then wake the writers it covers.
+    private void commit() {
+        while (true) {
+            Segment s;
+            int from, to;
+            long target;
+            synchronized (lock) {
+                while (synced == written && !failed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (failed) return;
+                s = segment;
+                from = s.synced;
+                to = s.map.position();
+                target = written;
+            }
+            // A concurrent roll() may seal `s` meanwhile; forcing its range again is harmless.
+            if (to > from) s.map.force(from, to - from);
+            synchronized (lock) {
+                s.synced = Math.max(s.synced, to);
+                synced = Math.max(synced, target);
+                syncs++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void compactIfWritten() {
+        synchronized (lock) {
+            if (failed || segment.map.position() == 0) return;
+            try {
+                roll(0);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    // Snapshot of the store taken after segment `gen` was opened, replacing everything before it.
+    private void compact(long gen) {
+        Path tmp = dir.resolve("snapshot.tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            // Active first: finish() adds to finished before leaving active, so a job finishing
+            // between the two reads shows up in both (and is written once, finished) rather than neither.
+            List<Job> active = store.activeJobs();
+            Set<String> done = new HashSet<>();
+            for (Job j : store.finishedJobs()) {
+                done.add(j.id);
+                buf = put(ch, buf, encode(ENQUEUE, j));
+                buf = put(ch, buf, encode(FINISH, j));
+            }
+            for (Job j : active) if (!done.contains(j.id)) buf = put(ch, buf, encode(ENQUEUE, j));
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        } catch (IOException e) {
+            System.err.println("JobJournal: writing snapshot " + gen + " failed: " + e);
+            return;
+        }
+        try {
+            Files.move(tmp, dir.resolve(String.format("snapshot-%08d.bin", gen)), StandardCopyOption.ATOMIC_MOVE);
+            for (Path p : list("journal-", ".log").headMap(gen).values()) Files.deleteIfExists(p);
+            for (Path p : list("snapshot-", ".bin").headMap(gen).values()) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            System.err.println("JobJournal: installing snapshot " + gen + " failed: " + e);
+            return;
+        }
+        synchronized (lock) {
+            snapshots++;
+        }
+    }
+
+    // Adds one framed record to `buf`, writing it out (or growing it for a huge record) when full.
+    private static ByteBuffer put(FileChannel ch, ByteBuffer buf, byte[] payload) throws IOException {
+        int size = HEADER + payload.length;
+        if (buf.remaining() < size) {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+            if (buf.capacity() < size) buf = ByteBuffer.allocate(size);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+    }
+
+    private Segment open(long gen, int size) throws IOException {
+        Path p = dir.resolve(String.format("journal-%08d.log", gen));
+        FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new Segment(gen, ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    // With the lock held: stop journaling for good and release anyone waiting on a sync.
+    private void fail(IOException e) {
+        System.err.println("JobJournal: disabled after " + e);
+        failed = true;
+        lock.notifyAll();
+    }
+
+    private TreeMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> out = new TreeMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                try {
+                    out.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), p);
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        return out;
+    }
+
+    // Applies every intact record of one file; a torn tail (crash mid-append) simply ends it.
+    private static void read(Path p, Map<String, Job> jobs) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        while (buf.remaining() >= HEADER) {
+            int len = buf.getInt();
+            int crc = buf.getInt();
+            if (len <= 0 || len > buf.remaining()) break;
+            byte[] payload = new byte[len];
+            buf.get(payload);
+            CRC32 c = new CRC32();
+            c.update(payload);
+            if ((int) c.getValue() != crc) break;
+            apply(ByteBuffer.wrap(payload), jobs);
+        }
+    }
+
+    // Known ids are never re-created and final states never reopened, so overlapping replays agree.
+    private static void apply(ByteBuffer b, Map<String, Job> jobs) {
+        byte type = b.get();
+        String id = new UUID(b.getLong(), b.getLong()).toString();
+        Job j = jobs.get(id);
+        switch (type) {
+            case ENQUEUE -> {
+                if (j != null) return;
+                JobPriority priority = PRIORITIES[b.get()];
+                long queuedMs = b.getLong();
+                long timeoutMs = b.getLong();
+                String sid = string(b);
+                String className = string(b);
+                String query = string(b);
+                byte[] body = new byte[b.getInt()];
+                b.get(body);
+                j = new Job(id, className, query, sid, body);
+                j.priority = priority;
+                j.queuedMs = queuedMs;
+                j.timeoutMs = timeoutMs;
+                jobs.put(id, j);
+            }
+            case DISCARD -> {
+                if (j != null && !j.state.isFinal()) jobs.remove(id);
+            }
+            case START -> {
+                if (j == null || j.state.isFinal()) return;
+                j.state = JobState.RUNNING;
+                j.startMs = b.getLong();
+            }
+            case FINISH -> {
+                if (j == null) return;
+                j.state = STATES[b.get()];
+                j.exit = b.getInt();
+                j.startMs = b.getLong();
+                j.endMs = b.getLong();
+            }
+            default -> throw new IllegalStateException("Unknown journal record " + type);
+        }
+    }
+
+    private static byte[] encode(byte type, Job j) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(type == ENQUEUE ? 128 + j.body.length : 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            UUID id = UUID.fromString(j.id);
+            out.writeByte(type);
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+            switch (type) {
+                case ENQUEUE -> {
+                    out.writeByte(j.priority.ordinal());
+                    out.writeLong(j.queuedMs);
+                    out.writeLong(j.timeoutMs);
+                    string(out, j.sid);
+                    string(out, j.className);
+                    string(out, j.query);
+                    out.writeInt(j.body.length);
+                    out.write(j.body);
+                }
+                case START -> out.writeLong(j.startMs);
+                case FINISH -> {
+                    out.writeByte(j.state.ordinal());
+                    out.writeInt(j.exit);
+                    out.writeLong(j.startMs);
+                    out.writeLong(j.endMs);
+                }
+                default -> {}
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void string(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String string(ByteBuffer b) {
+        byte[] s = new byte[b.getInt()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+}
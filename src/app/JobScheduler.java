@@ -0,0 +1,199 @@
+package app;
+
+import domain.Job;
+import domain.JobPriority;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded job queue with strict priority classes and round-robin fairness
+ * across sids inside each class: workers take the next job of the next sid
+ * in turn, so one sid with thousands of queued jobs delays every other sid
+ * by at most one job per turn. At most {@code maxQueued} jobs wait in total;
+ * beyond that {@link #submit} throws {@link RejectedExecutionException}.
+ */
+public class JobScheduler {
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+
+    // One class: a FIFO per sid plus the ring of sids that have work.
+    private static final class Level {
+        final Map<String, Deque<Job>> bySid = new HashMap<>();
+        final Deque<String> ring = new ArrayDeque<>();
+    }
+
+    private final int workers;
+    private final int maxQueued;
+    private final Level[] levels = new Level[PRIORITIES.length];
+    private final Map<String, Integer> depth = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private int queued = 0;
+    private volatile long avgRunMs = 1000;
+
+    public JobScheduler(int workers, int maxQueued) {
+        this.workers = workers;
+        this.maxQueued = maxQueued;
+        for (int i = 0; i < levels.length; i++) levels[i] = new Level();
+    }
+
+    /** Starts the worker threads, each handing jobs to {@code runner}. */
+    public void start(Consumer<Job> runner) {
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(() -> work(runner), "job-worker-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    public void submit(Job j) {
+        lock.lock();
+        try {
+            if (queued >= maxQueued) throw new RejectedExecutionException("Job queue is full (" + maxQueued + ")");
+            Level l = levels[j.priority.ordinal()];
+            Deque<Job> q = l.bySid.get(j.sid);
+            if (q == null) {
+                l.bySid.put(j.sid, q = new ArrayDeque<>());
+                l.ring.add(j.sid);
+            }
+            q.add(j);
+            depth.merge(j.sid, 1, Integer::sum);
+            queued++;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts a job that was taken but could not be run back at the head of its
+     * sid's line. Never rejected: the job already held a place in the queue.
+     */
+    public void requeue(Job j) {
+        lock.lock();
+        try {
+            Level l = levels[j.priority.ordinal()];
+            Deque<Job> q = l.bySid.get(j.sid);
+            if (q == null) {
+                l.bySid.put(j.sid, q = new ArrayDeque<>());
+                l.ring.addFirst(j.sid);
+            }
+            q.addFirst(j);
+            depth.merge(j.sid, 1, Integer::sum);
+            queued++;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes a job back out of the queue; false once a worker has picked it up. */
+    public boolean remove(Job j) {
+        lock.lock();
+        try {
+            Level l = levels[j.priority.ordinal()];
+            Deque<Job> q = l.bySid.get(j.sid);
+            if (q == null || !q.remove(j)) return false;
+            if (q.isEmpty()) {
+                l.bySid.remove(j.sid);
+                l.ring.remove(j.sid);
+            }
+            depth.computeIfPresent(j.sid, (k, n) -> n == 1 ? null : n - 1);
+            queued--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Jobs of {@code sid} still waiting for a worker. */
+    public int queued(String sid) {
+        lock.lock();
+        try {
+            return depth.getOrDefault(sid, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** How long the oldest queued job of {@code sid} has been waiting; 0 when none is queued. */
+    public long oldestWaitMs(String sid) {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        lock.lock();
+        try {
+            for (Level l : levels) {
+                Deque<Job> q = l.bySid.get(sid);
+                if (q != null && !q.isEmpty()) oldest = Math.min(oldest, q.peek().queuedMs);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return now - oldest;
+    }
+
+    /** Seconds a rejected client should wait: roughly one average job runtime. */
+    public long retryAfterSeconds() {
+        return Math.max(1, Math.min(60, TimeUnit.MILLISECONDS.toSeconds(avgRunMs)));
+    }
+
+    // ---- helpers ----
+    private void work(Consumer<Job> runner) {
+        while (true) {
+            Job j;
+            try {
+                j = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long t0 = System.currentTimeMillis();
+            try {
+                runner.accept(j);
+            } catch (RuntimeException e) {
+                System.err.println("JobScheduler: job " + j.id + " failed: " + e);
+            }
+            avgRunMs = (avgRunMs * 7 + (System.currentTimeMillis() - t0)) / 8;
+        }
+    }
+
+    /**
+     * Blocks until a job is available and removes it, for runners other than
+     * the built-in workers (e.g. remote cluster nodes).
+     */
+    public Job take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queued == 0) ready.await();
+            for (Level l : levels) {
+                String sid = l.ring.poll();
+                if (sid == null) continue;
+                Deque<Job> q = l.bySid.get(sid);
+                Job j = q.poll();
+                if (q.isEmpty()) l.bySid.remove(sid);
+                else l.ring.add(sid); // back of the line for this sid
+                depth.computeIfPresent(sid, (k, n) -> n == 1 ? null : n - 1);
+                queued--;
+                return j;
+            }
+            throw new IllegalStateException("queued=" + queued + " but every level is empty");
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,44 +1,309 @@
 package app;
 
 import domain.Job;
+import domain.JobPriority;
 import domain.JobState;
+import ports.CancelToken;
+import ports.ExecutorLostException;
 import ports.RouteExecutorPort;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class JobService {
+    static final int MAX_BATCHES = 1024;
+    static final int INLINE_BODY_BYTES = 1 << 20;
+    static final int MAX_ATTEMPTS = 3;
+
     private final RouteExecutorPort executor;
-    private final ExecutorService pool;
-    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+    private final JobScheduler scheduler;
+    private final JobStore jobs;
+    private final SingleFlight singleFlight;
+    private final JobTimeouts timeouts;
+    private final JobJournal journal;
+    private final JobEvents events = new JobEvents();
+    private final Metrics metrics = new Metrics();
+    private final List<Consumer<StringBuilder>> extraMetrics = new CopyOnWriteArrayList<>();
+    private final LongAdder requeued = new LongAdder();
+    private final ConcurrentMap<String, Live> live = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, JobBatch.Node> batchJobs = new ConcurrentHashMap<>(); // job id -> node
+    private final Map<String, JobBatch> batches = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JobBatch> eldest) {
+            return size() > MAX_BATCHES; // only forgets the status document; running nodes carry on
+        }
+    };
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "job-timeouts");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Cancellation handle of a job that has not finished yet; `stopped` is the final state asked for.
+    private static final class Live {
+        final Job job;
+        final CancelToken token = new CancelToken();
+        JobState stopped;
+        int attempts;
+
+        Live(Job job) {
+            this.job = job;
+        }
+    }
 
     public JobService(RouteExecutorPort executor) {
+        this(executor, new JobStore(TimeUnit.HOURS.toMillis(1), 10_000));
+    }
+
+    public JobService(RouteExecutorPort executor, JobStore jobs) {
+        this(executor, jobs, new SingleFlight(Set.of()));
+    }
+
+    public JobService(RouteExecutorPort executor, JobStore jobs, SingleFlight singleFlight) {
+        this(executor, jobs, singleFlight,
+                new JobScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()/2), 10_000));
+    }
+
+    public JobService(RouteExecutorPort executor, JobStore jobs, SingleFlight singleFlight, JobScheduler scheduler) {
+        this(executor, jobs, singleFlight, scheduler, JobTimeouts.none());
+    }
+
+    public JobService(RouteExecutorPort executor, JobStore jobs, SingleFlight singleFlight, JobScheduler scheduler,
+                      JobTimeouts timeouts) {
+        this(executor, jobs, singleFlight, scheduler, timeouts, JobJournal.disabled());
+    }
+
+    /** Replays {@code journal} first: finished jobs come back as such, unfinished ones are queued again. */
+    public JobService(RouteExecutorPort executor, JobStore jobs, SingleFlight singleFlight, JobScheduler scheduler,
+                      JobTimeouts timeouts, JobJournal journal) {
         this.executor = executor;
-        int n = Math.max(2, Runtime.getRuntime().availableProcessors()/2);
-        this.pool = Executors.newFixedThreadPool(n);
+        this.jobs = jobs;
+        this.singleFlight = singleFlight;
+        this.scheduler = scheduler;
+        this.timeouts = timeouts;
+        this.journal = journal;
         try {
             Files.createDirectories(Path.of("build/post"));
             Files.createDirectories(Path.of("build/jobs"));
         } catch (IOException ignored) {}
+        recover();
+        scheduler.start(j -> runJob(j, executor));
     }
 
     public RouteExecutorPort.ExecResult execSync(String className, String augmentedQ) {
-        return executor.execOnce(className, augmentedQ);
+        return execSync(className, augmentedQ, -1);
+    }
+
+    // Identical concurrent calls to opted-in routes share one execution (see SingleFlight).
+    // queueNanos is how long the caller waited for admission, or -1 when unknown.
+    public RouteExecutorPort.ExecResult execSync(String className, String augmentedQ, long queueNanos) {
+        return singleFlight.run(className, augmentedQ, () -> execOnce(className, augmentedQ, queueNanos));
+    }
+
+    /**
+     * Like {@link #execSync(String, String, long)}, but the call that runs
+     * the route first takes a slot from {@code limits} and releases it when
+     * done. Callers coalesced onto that call take no slot of their own.
+     * Returns null when no slot came free in time; the callers sharing that
+     * attempt all get null.
+     */
+    public RouteExecutorPort.ExecResult execSync(String className, String augmentedQ, RouteLimiter limits) {
+        return singleFlight.run(className, augmentedQ, () -> {
+            long waitStart = System.nanoTime();
+            try {
+                if (!limits.tryAcquire(className)) return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            try {
+                return execOnce(className, augmentedQ, System.nanoTime() - waitStart);
+            } finally {
+                limits.release(className);
+            }
+        });
+    }
+
+    public boolean coalesces(String className) {
+        return singleFlight.covers(className);
+    }
+
+    public SingleFlight singleFlight() {
+        return singleFlight;
+    }
+
+    public JobEvents events() {
+        return events;
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    public RouteExecutorPort.StreamResult execStreaming(String className, String augmentedQ, byte[] body,
+                                                        RouteExecutorPort.OutputOpener stdout) throws IOException {
+        return execStreaming(className, augmentedQ, body, stdout, -1);
+    }
+
+    public RouteExecutorPort.StreamResult execStreaming(String className, String augmentedQ, byte[] body,
+                                                        RouteExecutorPort.OutputOpener stdout,
+                                                        long queueNanos) throws IOException {
+        TimedOutputStream[] out = {null};
+        metrics.enter();
+        metrics.bytesIn(body == null ? 0 : body.length);
+        long t0 = System.nanoTime();
+        RouteExecutorPort.StreamResult r;
+        try {
+            r = executor.execStreaming(className, augmentedQ, body, new RouteExecutorPort.OutputOpener() {
+                @Override
+                public OutputStream open() throws IOException {
+                    return out[0] = new TimedOutputStream(stdout.open(), null);
+                }
+
+                @Override
+                public OutputStream openAfter(int exit) throws IOException {
+                    OutputStream os = stdout.openAfter(exit);
+                    return os == null ? null : (out[0] = new TimedOutputStream(os, null));
+                }
+            });
+        } finally {
+            metrics.leave();
+        }
+        long writeNanos = out[0] == null ? 0 : out[0].nanos;
+        if (out[0] != null) metrics.bytesOut(out[0].bytes);
+        observe(Metrics.Mode.SYNC, className, r.exit, r.stderr.head(), queueNanos,
+                r.spawnNanos, System.nanoTime() - t0, writeNanos);
+        return r;
+    }
+
+    /** Appends route metrics, queue depth and single-flight counters in Prometheus text format. */
+    public void writeMetrics(StringBuilder sb) {
+        metrics.writeTo(sb);
+        Metrics.gauge(sb, "cgiplus_job_queue_depth", "Jobs waiting for a worker.", scheduler.queued());
+        sb.append("# HELP cgiplus_sync_executed_total Sync calls to coalesced routes that ran the route.\n");
+        sb.append("# TYPE cgiplus_sync_executed_total counter\n");
+        singleFlight.executedCounts().forEach((cls, n) ->
+                sb.append("cgiplus_sync_executed_total{class=\"").append(cls).append("\"} ").append(n).append('\n'));
+        sb.append("# HELP cgiplus_sync_coalesced_total Sync calls answered by an identical in-flight call.\n");
+        sb.append("# TYPE cgiplus_sync_coalesced_total counter\n");
+        singleFlight.absorbedCounts().forEach((cls, n) ->
+                sb.append("cgiplus_sync_coalesced_total{class=\"").append(cls).append("\"} ").append(n).append('\n'));
+        Metrics.counter(sb, "cgiplus_job_requeued_total", "Jobs put back in the queue after their executor was lost.",
+                requeued.sum());
+        journal.writeMetrics(sb);
+        for (Consumer<StringBuilder> m : extraMetrics) m.accept(sb);
+    }
+
+    /** Adds series to {@link #writeMetrics}, e.g. from a cluster coordinator. */
+    public void addMetrics(Consumer<StringBuilder> writer) {
+        extraMetrics.add(writer);
+    }
+
+    /**
+     * Runs a job taken from {@link #scheduler()} on {@code via} instead of the
+     * local executor, exactly as a built-in worker would.
+     */
+    public void run(Job j, RouteExecutorPort via) {
+        runJob(j, via);
     }
 
     public Job enqueue(String className, String augmentedQ, String sid) {
-        Job j = new Job(className, augmentedQ, sid);
-        jobs.put(j.id, j);
-        pool.submit(() -> runJob(j));
-        return j;
+        return enqueue(className, augmentedQ, sid, null, JobPriority.NORMAL, 0);
+    }
+
+    /**
+     * Queues a job; throws {@link RejectedExecutionException} when the
+     * scheduler is full. {@code timeoutMs <= 0} leaves the route's own limit.
+     */
+    public Job enqueue(String className, String augmentedQ, String sid, byte[] body, JobPriority priority,
+                       long timeoutMs) {
+        return submit(className, augmentedQ, sid, body, priority, timeoutMs, null);
+    }
+
+    /**
+     * Starts a batch: every node without inputs is queued now, the rest as
+     * soon as all their inputs finish with exit 0. Throws
+     * IllegalArgumentException for a malformed graph and
+     * {@link RejectedExecutionException} (after cancelling what was queued)
+     * when the scheduler cannot take the initial nodes.
+     */
+    public JobBatch submitBatch(String sid, List<JobBatch.Spec> specs) {
+        JobBatch b = new JobBatch(sid, specs);
+        synchronized (batches) {
+            batches.put(b.id, b);
+        }
+        try {
+            for (JobBatch.Node n : b.roots()) {
+                queue(n, n.spec.query, n.spec.body);
+            }
+        } catch (RejectedExecutionException e) {
+            cancelBatch(b.id);
+            synchronized (batches) {
+                batches.remove(b.id);
+            }
+            throw e;
+        }
+        return b;
+    }
+
+    public JobBatch batch(String id) {
+        synchronized (batches) {
+            return batches.get(id);
+        }
+    }
+
+    /**
+     * Cancels every node of a batch that has not finished: waiting nodes end
+     * CANCELLED right away, queued and running jobs as in {@link #cancel}.
+     * False if the batch is unknown or already over.
+     */
+    public boolean cancelBatch(String id) {
+        JobBatch b = batch(id);
+        if (b == null) return false;
+        List<String> running = new ArrayList<>();
+        synchronized (b) {
+            if (b.cancelled || b.remaining == 0) return false;
+            b.cancelled = true;
+            for (JobBatch.Node n : b.nodes()) {
+                if (n.jobId != null) running.add(n.jobId);
+                else if (n.held == JobBatch.WAITING) hold(n, "CANCELLED", "Batch cancelled");
+            }
+        }
+        for (String jobId : running) cancel(jobId);
+        return true;
+    }
+
+    /**
+     * Cancels a queued or running job. A queued job finishes as CANCELLED
+     * right away; a running one has its process tree killed and finishes as
+     * soon as the executor returns. False if the job already finished.
+     */
+    public boolean cancel(String id) {
+        return stop(id, JobState.CANCELLED);
+    }
+
+    public JobScheduler scheduler() {
+        return scheduler;
     }
 
     public Job get(String id) { return jobs.get(id); }
 
+    public List<Job> activeJobs(String sid) { return jobs.active(sid); }
+
     public Path writePostBody(byte[] bodyBytes) throws IOException {
         String id = UUID.randomUUID().toString();
         Path postPath = Path.of("build/post", id + ".txt");
@@ -47,25 +312,325 @@ public class JobService {
         return postPath;
     }
 
-    private void runJob(Job j) {
-        j.state = JobState.RUNNING;
+    // A body spooled under build/post is renamed after the job that reads it, so the sweeper
+    // leaves it alone while the job waits in the queue, however long that takes.
+    private static String adoptPost(String id, String q) {
+        String spooled = QueryParams.parse(q).get("__post");
+        if (spooled == null) return q;
+        Path from = Path.of(spooled).normalize();
+        Path postDir = Path.of("build/post");
+        if (!from.startsWith(postDir) || !Files.isRegularFile(from)) return q;
+        Path to = postDir.resolve(id + ".txt");
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not adopt " + from + " for job " + id + ": " + e);
+            return q;
+        }
+        return q.replace("__post=" + QueryUtil.enc(spooled), "__post=" + QueryUtil.enc(to.toString()));
+    }
+
+    private Job submit(String className, String augmentedQ, String sid, byte[] body, JobPriority priority,
+                       long timeoutMs, JobBatch.Node node) {
+        String id = UUID.randomUUID().toString();
+        Job j = new Job(id, className, adoptPost(id, augmentedQ), sid, body);
+        j.priority = priority;
+        j.timeoutMs = timeouts.forJob(className, timeoutMs);
+        jobs.add(j); // before submit: a worker may finish the job before submit returns
+        live.put(j.id, new Live(j));
+        if (node != null) {
+            batchJobs.put(j.id, node);
+            node.jobId = j.id;
+        }
+        journal.enqueued(j); // durable before anyone learns the id
+        try {
+            scheduler.submit(j);
+        } catch (RejectedExecutionException e) {
+            live.remove(j.id);
+            jobs.discard(j);
+            journal.discarded(j);
+            if (node != null) {
+                batchJobs.remove(j.id);
+                node.jobId = null;
+            }
+            throw e;
+        }
+        events.publish(j);
+        return j;
+    }
+
+    private void queue(JobBatch.Node n, String query, byte[] body) {
+        JobBatch.Spec s = n.spec;
+        synchronized (n.batch) {
+            n.held = null;
+        }
+        Job j = submit(s.className, query, n.batch.sid, body, s.priority, s.timeoutMs, n);
+        boolean late;
+        synchronized (n.batch) {
+            late = n.batch.cancelled; // cancelBatch ran while this node was being queued
+        }
+        if (late) cancel(j.id);
+    }
+
+    // A batch job reached a final state: release dependents whose inputs are now all done, or skip them.
+    private void batchJobFinished(JobBatch.Node n, boolean ok) {
+        JobBatch b = n.batch;
+        List<JobBatch.Node> ready = new ArrayList<>();
+        synchronized (b) {
+            b.nodeFinished(ok);
+            for (JobBatch.Node d : n.dependents) {
+                if (!ok) {
+                    hold(d, "SKIPPED", "Input " + n.spec.id + " did not succeed");
+                } else if (--d.pending == 0 && d.held == JobBatch.WAITING && !b.cancelled) {
+                    ready.add(d);
+                }
+            }
+        }
+        for (JobBatch.Node d : ready) release(d);
+    }
+
+    // Marks a node that never got a job as final, and everything downstream of it as skipped. Batch lock held.
+    private void hold(JobBatch.Node n, String state, String why) {
+        if (n.held != JobBatch.WAITING) return;
+        if (n.batch.cancelled) state = "CANCELLED";
+        n.held = state;
+        n.error = why;
+        n.batch.nodeFinished(false);
+        for (JobBatch.Node d : n.dependents) {
+            hold(d, "SKIPPED", "Input " + n.spec.id + " was " + state.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // Feeds the inputs' stdout to the node: in memory when small, as a __post file otherwise.
+    private void release(JobBatch.Node n) {
+        String query = n.spec.query;
+        byte[] body;
+        try {
+            List<Path> files = new ArrayList<>();
+            long total = 0;
+            for (JobBatch.Node in : n.inputs) {
+                Path p = Path.of("build/jobs", in.jobId + ".out");
+                files.add(p);
+                if (Files.exists(p)) total += Files.size(p);
+            }
+            if (total <= INLINE_BODY_BYTES) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream((int) total);
+                for (Path p : files) if (Files.exists(p)) Files.copy(p, bos);
+                body = bos.toByteArray();
+            } else {
+                Path post = Path.of("build/post", UUID.randomUUID() + ".txt");
+                try (OutputStream out = Files.newOutputStream(post)) {
+                    for (Path p : files) if (Files.exists(p)) Files.copy(p, out);
+                }
+                query = query + (query.isEmpty() ? "" : "&") + "__post=" + QueryUtil.enc(post.toString());
+                body = null;
+            }
+        } catch (IOException e) {
+            failHeld(n, "Could not collect inputs: " + e);
+            return;
+        }
+        try {
+            queue(n, query, body);
+        } catch (RejectedExecutionException e) {
+            failHeld(n, "Job queue full: " + e.getMessage());
+        }
+    }
+
+    private void failHeld(JobBatch.Node n, String why) {
+        synchronized (n.batch) {
+            n.held = JobBatch.WAITING;
+            hold(n, "FAILED", why);
+        }
+    }
+
+    private boolean stop(String id, JobState outcome) {
+        Live l = live.get(id);
+        if (l == null) return false;
+        synchronized (l) {
+            if (l.stopped != null) return false;
+            l.stopped = outcome;
+        }
+        if (scheduler.remove(l.job)) {
+            // Never reached a worker, so nobody else will finish it.
+            l.job.endMs = System.currentTimeMillis();
+            finish(l, -1);
+        } else {
+            l.token.cancel();
+        }
+        return true;
+    }
+
+    private void runJob(Job j, RouteExecutorPort executor) {
+        Live l = live.get(j.id);
+        synchronized (l) {
+            if (l.stopped == null) j.state = JobState.RUNNING;
+        }
+        if (j.state != JobState.RUNNING) { // cancelled after a worker took it, so stop() could not dequeue it
+            j.endMs = System.currentTimeMillis();
+            finish(l, -1);
+            return;
+        }
         j.startMs = System.currentTimeMillis();
+        journal.started(j);
+        events.publish(j);
+        ScheduledFuture<?> timeout = j.timeoutMs <= 0 ? null
+                : timers.schedule(() -> stop(j.id, JobState.TIMED_OUT), j.timeoutMs, TimeUnit.MILLISECONDS);
         int exit = -1;
-        try {
-            ProcessBuilder pb = new ProcessBuilder("make", "-s", "run", "CLASS=" + j.className, "Q=" + j.query);
-            pb.redirectOutput(j.stdoutPath.toFile());
-            pb.redirectError(j.stderrPath.toFile());
-            Process p = pb.start();
-            exit = p.waitFor();
+        boolean retry = false;
+        metrics.enter();
+        metrics.bytesIn(j.body.length);
+        long t0 = System.nanoTime();
+        // stdout goes straight to the job file; each flush tells subscribers the file grew.
+        try (TimedOutputStream out = new TimedOutputStream(Files.newOutputStream(j.stdoutPath), () -> events.publish(j));
+             RouteExecutorPort.StreamResult r = executor.execStreaming(j.className, j.query, j.body, () -> out, l.token);
+             OutputStream err = Files.newOutputStream(j.stderrPath)) {
+            r.stderr.writeTo(err);
+            exit = r.exit;
+            metrics.bytesOut(out.bytes);
+            observe(Metrics.Mode.JOB, j.className, r.exit, r.stderr.head(),
+                    TimeUnit.MILLISECONDS.toNanos(j.startMs - j.queuedMs), r.spawnNanos, System.nanoTime() - t0, out.nanos);
+        } catch (ExecutorLostException e) {
+            retry = retryable(l);
+            if (!retry) appendStderr(j, "Exception: " + e);
         } catch (Exception e) {
+            appendStderr(j, "Exception: " + e);
+        } finally {
+            metrics.leave();
+            if (timeout != null) timeout.cancel(false);
+            if (retry) {
+                requeue(j);
+            } else {
+                j.endMs = System.currentTimeMillis();
+                finish(l, exit);
+            }
+        }
+    }
+
+    // Restores the journal's jobs before any worker runs. Batch wiring is not journaled: recovered nodes run as plain jobs.
+    private void recover() {
+        JobJournal.Recovery r = journal.replay();
+        for (Job j : r.finished) jobs.finish(j);
+        // requeue() puts each job first in line, so walk backwards to keep the original order.
+        for (int i = r.pending.size() - 1; i >= 0; i--) {
+            Job j = r.pending.get(i);
             try {
-                Files.writeString(j.stderrPath, "Exception: " + e + "\n",
-                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Files.deleteIfExists(j.stdoutPath); // from the run the restart interrupted
             } catch (IOException ignored) {}
+            j.state = JobState.QUEUED;
+            j.startMs = 0;
+            jobs.add(j);
+            live.put(j.id, new Live(j));
+            scheduler.requeue(j);
+        }
+        journal.start(jobs);
+        if (!r.finished.isEmpty() || !r.pending.isEmpty()) {
+            System.out.println("Job journal: recovered " + r.finished.size() + " finished and "
+                    + r.pending.size() + " unfinished jobs");
+        }
+    }
+
+    private boolean retryable(Live l) {
+        synchronized (l) {
+            return l.stopped == null && ++l.attempts < MAX_ATTEMPTS;
+        }
+    }
+
+    // The executor died under the job: start over from an empty stdout at the head of the queue.
+    private void requeue(Job j) {
+        try {
+            Files.deleteIfExists(j.stdoutPath);
+        } catch (IOException ignored) {}
+        j.state = JobState.QUEUED;
+        j.startMs = 0;
+        requeued.increment();
+        scheduler.requeue(j);
+        events.publish(j);
+    }
+
+    private static void appendStderr(Job j, String line) {
+        try {
+            Files.writeString(j.stderrPath, line + "\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ignored) {}
+    }
+
+    private RouteExecutorPort.ExecResult execOnce(String className, String augmentedQ, long queueNanos) {
+        metrics.enter();
+        long t0 = System.nanoTime();
+        RouteExecutorPort.ExecResult r;
+        try {
+            r = executor.execOnce(className, augmentedQ);
         } finally {
-            j.exit = exit;
-            j.endMs = System.currentTimeMillis();
-            j.state = JobState.DONE;
+            metrics.leave();
+        }
+        observe(Metrics.Mode.SYNC, className, r.exit, r.stderr, queueNanos,
+                r.spawnNanos, System.nanoTime() - t0, 0);
+        return r;
+    }
+
+    // Records one finished call; unknown classes are only counted so they cannot create series.
+    private void observe(Metrics.Mode mode, String className, int exit, String stderrHead, long queueNanos,
+                         long spawnNanos, long totalNanos, long writeNanos) {
+        if (exit != 0 && RouteExecutorPort.missingClass(stderrHead)) {
+            metrics.notFound(mode);
+            return;
+        }
+        metrics.exit(className, exit);
+        if (queueNanos >= 0) metrics.record(className, mode, Metrics.Phase.QUEUE_WAIT, queueNanos);
+        if (spawnNanos > 0) metrics.record(className, mode, Metrics.Phase.SPAWN, spawnNanos);
+        metrics.record(className, mode, Metrics.Phase.RUN, totalNanos - spawnNanos - writeNanos);
+        if (writeNanos > 0) metrics.record(className, mode, Metrics.Phase.WRITE, writeNanos);
+    }
+
+    private void finish(Live l, int exit) {
+        Job j = l.job;
+        JobState state;
+        synchronized (l) {
+            state = l.stopped == null ? JobState.DONE : l.stopped;
+            l.stopped = state; // a late cancel now finds the job stopped
+        }
+        if (state != JobState.DONE) {
+            String why = state == JobState.TIMED_OUT ? "Timed out after " + j.timeoutMs + " ms" : "Cancelled";
+            try {
+                Files.writeString(j.stderrPath, why + "\n",
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException ignored) {}
+        }
+        j.exit = exit;
+        j.state = state;
+        live.remove(j.id);
+        jobs.finish(j);
+        journal.finished(j); // after the store, so a snapshot never misses a finish it compacts away
+        events.publish(j);
+        JobBatch.Node node = batchJobs.remove(j.id);
+        if (node != null) batchJobFinished(node, state == JobState.DONE && exit == 0);
+    }
+
+    // Counts bytes and time spent writing route stdout; `onFlush` runs after every flush.
+    private static final class TimedOutputStream extends FilterOutputStream {
+        long nanos;
+        long bytes;
+        private final Runnable onFlush;
+
+        TimedOutputStream(OutputStream out, Runnable onFlush) {
+            super(out);
+            this.onFlush = onFlush;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long t0 = System.nanoTime();
+            out.write(b, off, len);
+            nanos += System.nanoTime() - t0;
+            bytes += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long t0 = System.nanoTime();
+            out.flush();
+            nanos += System.nanoTime() - t0;
+            if (onFlush != null) onFlush.run();
         }
     }
 }
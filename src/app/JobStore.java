@@ -0,0 +1,259 @@
+package app;
+
+import domain.Job;
+import domain.JobPriority;
+import domain.JobState;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded home for {@link Job}s. Queued and running jobs are held as-is and
+ * never evicted. Finished jobs are folded into a compact record (UUID as two
+ * longs, primitive timestamps, no query string) kept in access order: the
+ * least recently read ones go first once {@code maxFinished} is exceeded, and
+ * the sweeper drops any not read within {@code retentionMs}. The sweeper also
+ * deletes their {@code build/jobs} files and {@code build/post/<id>.txt}
+ * bodies, plus stale files no live job owns, at most {@link #SWEEP_BATCH}
+ * files per pass. A queued job's body is never swept, however old.
+ */
+public class JobStore {
+    static final int SWEEP_BATCH = 500;
+
+    private static final JobState[] STATES = JobState.values();
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+
+    private static final class Finished {
+        final String sid;
+        final String className;
+        final byte state;
+        final byte priority;
+        final int exit;
+        final long queuedMs;
+        final long timeoutMs;
+        final long startMs;
+        final long endMs;
+        long lastAccessMs;
+
+        Finished(Job j, long now) {
+            this.sid = j.sid;
+            this.className = j.className;
+            this.state = (byte) j.state.ordinal();
+            this.priority = (byte) j.priority.ordinal();
+            this.exit = j.exit;
+            this.queuedMs = j.queuedMs;
+            this.timeoutMs = j.timeoutMs;
+            this.startMs = j.startMs;
+            this.endMs = j.endMs;
+            this.lastAccessMs = now;
+        }
+    }
+
+    private final long retentionMs;
+    private final int maxFinished;
+    private final Path jobsDir;
+    private final Path postDir;
+    private final ConcurrentMap<String, Job> active = new ConcurrentHashMap<>();
+    private final Deque<UUID> doomed = new ArrayDeque<>();
+    private final LinkedHashMap<UUID, Finished> finished;
+
+    public JobStore(long retentionMs, int maxFinished) {
+        this(retentionMs, maxFinished, Path.of("build/jobs"), Path.of("build/post"));
+    }
+
+    public JobStore(long retentionMs, int maxFinished, Path jobsDir, Path postDir) {
+        this.retentionMs = retentionMs;
+        this.maxFinished = maxFinished;
+        this.jobsDir = jobsDir;
+        this.postDir = postDir;
+        this.finished = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Finished> eldest) {
+                if (size() <= JobStore.this.maxFinished) return false;
+                doomed.add(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Starts a daemon thread that expires finished jobs and deletes their
+     * files every {@code min(retention / 4, 60s)}.
+     */
+    public void startSweeper() {
+        long period = Math.max(1000, Math.min(retentionMs / 4, 60_000));
+        ScheduledExecutorService s = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        s.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(Job j) {
+        active.put(j.id, j);
+    }
+
+    /** Forgets a job that was never started. */
+    public void discard(Job j) {
+        active.remove(j.id);
+    }
+
+    /** Moves a job that reached a terminal state into the compact finished table. */
+    public void finish(Job j) {
+        UUID key = UUID.fromString(j.id);
+        synchronized (finished) {
+            finished.put(key, new Finished(j, System.currentTimeMillis()));
+        }
+        active.remove(j.id);
+    }
+
+    public Job get(String id) {
+        if (id == null) return null;
+        Job j = active.get(id);
+        if (j != null) return j;
+        UUID key;
+        try {
+            key = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Finished f;
+        synchronized (finished) {
+            f = finished.get(key);
+            if (f == null) return null;
+            f.lastAccessMs = System.currentTimeMillis();
+        }
+        // The job may have finished between the two lookups; the compact copy wins.
+        return view(key, f);
+    }
+
+    /** Queued and running jobs started with {@code sid}. */
+    public List<Job> active(String sid) {
+        List<Job> out = new ArrayList<>();
+        for (Job j : active.values()) if (j.sid.equals(sid)) out.add(j);
+        return out;
+    }
+
+    /** Every queued and running job. */
+    public List<Job> activeJobs() {
+        return new ArrayList<>(active.values());
+    }
+
+    /** Read-only copies of the finished jobs, least recently read first. */
+    public List<Job> finishedJobs() {
+        synchronized (finished) {
+            List<Job> out = new ArrayList<>(finished.size());
+            finished.forEach((key, f) -> out.add(view(key, f)));
+            return out;
+        }
+    }
+
+    public int activeCount() {
+        return active.size();
+    }
+
+    public int finishedCount() {
+        synchronized (finished) {
+            return finished.size();
+        }
+    }
+
+    /**
+     * Expires finished jobs not read within the retention window, then deletes
+     * a batch of files belonging to expired or evicted jobs and of POST bodies
+     * older than the window that no queued or running job owns.
+     */
+    public void sweep() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        List<UUID> batch = new ArrayList<>();
+        synchronized (finished) {
+            Iterator<Map.Entry<UUID, Finished>> it = finished.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<UUID, Finished> e = it.next();
+                if (e.getValue().lastAccessMs >= cutoff) break; // access order: the rest are newer
+                doomed.add(e.getKey());
+                it.remove();
+            }
+            while (batch.size() < SWEEP_BATCH && !doomed.isEmpty()) batch.add(doomed.poll());
+        }
+
+        int budget = SWEEP_BATCH;
+        for (UUID id : batch) {
+            budget -= deleteQuietly(jobsDir.resolve(id + ".out"));
+            budget -= deleteQuietly(jobsDir.resolve(id + ".err"));
+            budget -= deleteQuietly(postDir.resolve(id + ".txt"));
+        }
+        // Leftovers from earlier runs and per-request POST bodies have no owner to evict them.
+        // A finished job still needs its output, but no longer its body.
+        budget = deleteOlderThan(jobsDir, cutoff, budget, true);
+        deleteOlderThan(postDir, cutoff, budget, false);
+    }
+
+    // ---- helpers ----
+    private static Job view(UUID key, Finished f) {
+        Job view = new Job(key.toString(), f.className, "", f.sid, null);
+        view.state = STATES[f.state];
+        view.priority = PRIORITIES[f.priority];
+        view.exit = f.exit;
+        view.queuedMs = f.queuedMs;
+        view.timeoutMs = f.timeoutMs;
+        view.startMs = f.startMs;
+        view.endMs = f.endMs;
+        return view;
+    }
+
+    private int deleteOlderThan(Path dir, long cutoff, int budget, boolean keepFinished) {
+        if (budget <= 0 || !Files.isDirectory(dir)) return budget;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (budget <= 0) break;
+                if (Files.isDirectory(p) || Files.getLastModifiedTime(p).toMillis() >= cutoff
+                        || isRetained(p, keepFinished)) continue;
+                budget -= deleteQuietly(p);
+            }
+        } catch (IOException e) {
+            System.err.println("JobStore: sweeping " + dir + " failed: " + e);
+        }
+        return budget;
+    }
+
+    private boolean isRetained(Path p, boolean keepFinished) {
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String id = dot > 0 ? name.substring(0, dot) : name;
+        if (active.containsKey(id)) return true;
+        if (!keepFinished) return false;
+        try {
+            UUID key = UUID.fromString(id);
+            synchronized (finished) {
+                return finished.containsKey(key);
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static int deleteQuietly(Path p) {
+        try {
+            return Files.deleteIfExists(p) ? 1 : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package app;
+
+import java.util.Map;
+
+/**
+ * Wall-clock limits for async jobs: a default plus per-route overrides, both
+ * in milliseconds, where {@code 0} means no limit. A start request may ask for
+ * its own timeout; it can shorten the route's limit but never extend it.
+ */
+public class JobTimeouts {
+    private final long defaultMs;
+    private final Map<String, Long> overridesMs;
+
+    public JobTimeouts(long defaultMs, Map<String, Long> overridesMs) {
+        this.defaultMs = defaultMs;
+        this.overridesMs = Map.copyOf(overridesMs);
+    }
+
+    public static JobTimeouts none() {
+        return new JobTimeouts(0, Map.of());
+    }
+
+    /** Effective timeout for a job of {@code className}; {@code requestedMs <= 0} means none asked for. */
+    public long forJob(String className, long requestedMs) {
+        long routeMs = overridesMs.getOrDefault(className, defaultMs);
+        if (routeMs <= 0) return Math.max(0, requestedMs);
+        return requestedMs <= 0 ? routeMs : Math.min(routeMs, requestedMs);
+    }
+}
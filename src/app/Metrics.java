@@ -0,0 +1,171 @@
+package app;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route timing and counters, rendered in the Prometheus text format. Each
+ * route class owns one fixed-bucket histogram per (mode, phase) pair and an
+ * exit-code table, created the first time the class runs. After that,
+ * recording a sample is a map lookup plus atomic increments, with no
+ * allocation. Calls to classes that do not exist are only counted, so that
+ * crawler URLs cannot create per-class series.
+ */
+public class Metrics {
+
+    public enum Mode { SYNC, JOB }
+
+    public enum Phase { QUEUE_WAIT, SPAWN, RUN, WRITE }
+
+    private static final Mode[] MODES = Mode.values();
+    private static final Phase[] PHASES = Phase.values();
+
+    /** Bucket upper bounds in nanoseconds: 0.5 ms up to 60 s. */
+    private static final long[] BOUNDS_NS = {
+            500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L,
+            10_000_000_000L, 30_000_000_000L, 60_000_000_000L
+    };
+    private static final String[] BOUND_LABELS = {
+            "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05",
+            "0.1", "0.25", "0.5", "1", "2.5", "5", "10", "30", "60"
+    };
+    private static final int MAX_EXIT = 255;
+
+    static final class Histogram {
+        final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_NS.length + 1); // last is +Inf
+        final LongAdder sumNs = new LongAdder();
+
+        void record(long ns) {
+            int i = 0;
+            while (i < BOUNDS_NS.length && ns > BOUNDS_NS[i]) i++;
+            buckets.incrementAndGet(i);
+            sumNs.add(ns);
+        }
+    }
+
+    private static final class Route {
+        final Histogram[] phases = new Histogram[MODES.length * PHASES.length];
+        final AtomicLongArray exits = new AtomicLongArray(MAX_EXIT + 2); // 0..255, then anything else
+
+        Route() {
+            for (int i = 0; i < phases.length; i++) phases[i] = new Histogram();
+        }
+    }
+
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+    private final LongAdder[] notFound = { new LongAdder(), new LongAdder() };
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public void record(String className, Mode mode, Phase phase, long nanos) {
+        if (nanos < 0) return;
+        route(className).phases[mode.ordinal() * PHASES.length + phase.ordinal()].record(nanos);
+    }
+
+    public void exit(String className, int code) {
+        route(className).exits.incrementAndGet(code >= 0 && code <= MAX_EXIT ? code : MAX_EXIT + 1);
+    }
+
+    /** A call whose route class could not be loaded. */
+    public void notFound(Mode mode) {
+        notFound[mode.ordinal()].increment();
+    }
+
+    public void bytesIn(long n) {
+        if (n > 0) bytesIn.add(n);
+    }
+
+    public void bytesOut(long n) {
+        if (n > 0) bytesOut.add(n);
+    }
+
+    public void enter() {
+        inFlight.incrementAndGet();
+    }
+
+    public void leave() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /** Appends every metric in Prometheus text exposition format. */
+    public void writeTo(StringBuilder sb) {
+        Map<String, Route> sorted = new TreeMap<>(routes);
+
+        sb.append("# HELP cgiplus_route_seconds Time spent per route call, by mode and phase.\n");
+        sb.append("# TYPE cgiplus_route_seconds histogram\n");
+        for (Map.Entry<String, Route> e : sorted.entrySet()) {
+            for (Mode m : MODES) {
+                for (Phase p : PHASES) {
+                    Histogram h = e.getValue().phases[m.ordinal() * PHASES.length + p.ordinal()];
+                    String labels = "class=\"" + e.getKey() + "\",mode=\"" + label(m) + "\",phase=\"" + label(p) + "\"";
+                    long cumulative = 0;
+                    for (int i = 0; i <= BOUNDS_NS.length; i++) {
+                        cumulative += h.buckets.get(i);
+                        String le = i < BOUNDS_NS.length ? BOUND_LABELS[i] : "+Inf";
+                        sb.append("cgiplus_route_seconds_bucket{").append(labels).append(",le=\"").append(le)
+                                .append("\"} ").append(cumulative).append('\n');
+                    }
+                    sb.append("cgiplus_route_seconds_sum{").append(labels).append("} ")
+                            .append(h.sumNs.sum() / 1e9).append('\n');
+                    sb.append("cgiplus_route_seconds_count{").append(labels).append("} ").append(cumulative).append('\n');
+                }
+            }
+        }
+
+        sb.append("# HELP cgiplus_route_exits_total Route calls by exit code.\n");
+        sb.append("# TYPE cgiplus_route_exits_total counter\n");
+        for (Map.Entry<String, Route> e : sorted.entrySet()) {
+            AtomicLongArray exits = e.getValue().exits;
+            for (int code = 0; code < exits.length(); code++) {
+                long n = exits.get(code);
+                if (n == 0) continue;
+                sb.append("cgiplus_route_exits_total{class=\"").append(e.getKey()).append("\",exit=\"")
+                        .append(code <= MAX_EXIT ? String.valueOf(code) : "other").append("\"} ").append(n).append('\n');
+            }
+        }
+
+        sb.append("# HELP cgiplus_route_not_found_total Calls to route classes that do not exist.\n");
+        sb.append("# TYPE cgiplus_route_not_found_total counter\n");
+        for (Mode m : MODES) {
+            sb.append("cgiplus_route_not_found_total{mode=\"").append(label(m)).append("\"} ")
+                    .append(notFound[m.ordinal()].sum()).append('\n');
+        }
+        counter(sb, "cgiplus_route_bytes_in_total", "Request body bytes handed to routes.", bytesIn.sum());
+        counter(sb, "cgiplus_route_bytes_out_total", "Stdout bytes produced by routes.", bytesOut.sum());
+        gauge(sb, "cgiplus_routes_in_flight", "Route calls currently executing.", inFlight.get());
+    }
+
+    public static void counter(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    public static void gauge(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    // ---- helpers ----
+    private Route route(String className) {
+        Route r = routes.get(className);
+        return r != null ? r : routes.computeIfAbsent(className, k -> new Route());
+    }
+
+    private static String label(Enum<?> e) {
+        return e.name().toLowerCase(Locale.ROOT);
+    }
+}
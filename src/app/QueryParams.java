@@ -0,0 +1,218 @@
+package app;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parsed view of a raw {@code application/x-www-form-urlencoded} query. One
+ * pass records where each key and value starts and ends in the original
+ * text; nothing is copied or decoded until a value is read, and keys without
+ * {@code %} or {@code +} are matched against the raw text directly.
+ * Repeated keys keep every value in order. Malformed percent escapes are
+ * kept verbatim rather than rejected, so a stray {@code %} never hides the
+ * rest of the query.
+ */
+public final class QueryParams {
+    private static final QueryParams EMPTY = new QueryParams("", new int[0], 0);
+
+    private final CharSequence raw;
+    private final int[] bounds;   // keyStart, eq (or end when no '='), end per pair
+    private final int count;
+
+    private QueryParams(CharSequence raw, int[] bounds, int count) {
+        this.raw = raw;
+        this.bounds = bounds;
+        this.count = count;
+    }
+
+    public static QueryParams parse(CharSequence raw) {
+        if (raw == null || raw.length() == 0) return EMPTY;
+        int[] b = new int[24];
+        int n = 0;
+        int len = raw.length();
+        int start = 0;
+        while (start <= len) {
+            int eq = -1;
+            int i = start;
+            for (; i < len; i++) {
+                char c = raw.charAt(i);
+                if (c == '&') break;
+                if (c == '=' && eq < 0) eq = i;
+            }
+            if (i > start) {
+                if (n * 3 == b.length) b = Arrays.copyOf(b, b.length * 2);
+                b[n * 3] = start;
+                b[n * 3 + 1] = eq < 0 ? i : eq;
+                b[n * 3 + 2] = i;
+                n++;
+            }
+            start = i + 1;
+        }
+        return new QueryParams(raw, b, n);
+    }
+
+    /** Number of pairs, counting repeated keys once per occurrence. */
+    public int size() {
+        return count;
+    }
+
+    public String name(int i) {
+        return decode(bounds[i * 3], bounds[i * 3 + 1]);
+    }
+
+    public String value(int i) {
+        int eq = bounds[i * 3 + 1], end = bounds[i * 3 + 2];
+        return eq == end ? "" : decode(eq + 1, end);
+    }
+
+    public boolean has(String name) {
+        return indexOf(name, 0) >= 0;
+    }
+
+    /**
+     * First value for {@code name}, or null when absent. The host strips
+     * client {@code __} names, so its own {@code __sid}/{@code __post} are
+     * the only ones a route ever sees, wherever they sit in the query.
+     */
+    public String get(String name) {
+        int i = indexOf(name, 0);
+        return i < 0 ? null : value(i);
+    }
+
+    public String get(String name, String def) {
+        String v = get(name);
+        return v == null ? def : v;
+    }
+
+    /** Every value for {@code name}, in query order. */
+    public List<String> all(String name) {
+        List<String> out = new ArrayList<>(2);
+        for (int i = indexOf(name, 0); i >= 0; i = indexOf(name, i + 1)) out.add(value(i));
+        return out;
+    }
+
+    /** First value as an int; {@code def} when absent or not a number. */
+    public int getInt(String name, int def) {
+        long v = getLong(name, def);
+        return v == (int) v ? (int) v : def;
+    }
+
+    /** First value as a long; {@code def} when absent or not a number. */
+    public long getLong(String name, long def) {
+        String v = get(name);
+        if (v == null) return def;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /**
+     * First value as a boolean: {@code true/1/yes/on} or {@code false/0/no/off}
+     * in any case; a key present without a value counts as true. {@code def}
+     * otherwise.
+     */
+    public boolean getBoolean(String name, boolean def) {
+        int i = indexOf(name, 0);
+        if (i < 0) return def;
+        String v = value(i).trim();
+        if (v.isEmpty() || v.equalsIgnoreCase("true") || v.equals("1")
+                || v.equalsIgnoreCase("yes") || v.equalsIgnoreCase("on")) return true;
+        if (v.equalsIgnoreCase("false") || v.equals("0")
+                || v.equalsIgnoreCase("no") || v.equalsIgnoreCase("off")) return false;
+        return def;
+    }
+
+    /**
+     * The raw query without the pairs whose decoded name starts with
+     * {@code prefix}; the other pairs are kept verbatim and in order.
+     */
+    public String without(String prefix) {
+        StringBuilder sb = null;
+        for (int i = 0; i < count; i++) {
+            boolean drop = name(i).startsWith(prefix);
+            if (drop && sb == null) {
+                sb = new StringBuilder(raw.length());
+                for (int k = 0; k < i; k++) appendPair(sb, k);
+            } else if (!drop && sb != null) {
+                appendPair(sb, i);
+            }
+        }
+        return sb == null ? raw.toString() : sb.toString(); // nothing dropped: the common case copies nothing
+    }
+
+    @Override
+    public String toString() {
+        return raw.toString();
+    }
+
+    // ---- helpers ----
+    private int indexOf(String name, int from) {
+        for (int i = from; i < count; i++) {
+            int ks = bounds[i * 3], ke = bounds[i * 3 + 1];
+            if (plain(ks, ke)) {
+                if (ke - ks == name.length() && regionMatches(ks, name)) return i;
+            } else if (decode(ks, ke).equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void appendPair(StringBuilder sb, int i) {
+        if (sb.length() > 0) sb.append('&');
+        sb.append(raw, bounds[i * 3], bounds[i * 3 + 2]);
+    }
+
+    private boolean regionMatches(int start, String name) {
+        for (int j = 0; j < name.length(); j++) {
+            if (raw.charAt(start + j) != name.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private boolean plain(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c == '%' || c == '+') return false;
+        }
+        return true;
+    }
+
+    // Percent-decodes as UTF-8; '+' is a space.
+    private String decode(int start, int end) {
+        if (plain(start, end)) return raw.subSequence(start, end).toString();
+        StringBuilder sb = new StringBuilder(end - start);
+        ByteArrayOutputStream bytes = null;
+        int i = start;
+        while (i < end) {
+            char c = raw.charAt(i);
+            if (escapeAt(i, end)) {
+                // Gather the whole run of escapes so multi-byte characters decode together.
+                if (bytes == null) bytes = new ByteArrayOutputStream(8);
+                bytes.reset();
+                do {
+                    bytes.write((hexAt(i + 1, end) << 4) | hexAt(i + 2, end));
+                    i += 3;
+                } while (escapeAt(i, end));
+                sb.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+                continue;
+            }
+            sb.append(c == '+' ? ' ' : c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private boolean escapeAt(int i, int end) {
+        return i < end && raw.charAt(i) == '%' && hexAt(i + 1, end) >= 0 && hexAt(i + 2, end) >= 0;
+    }
+
+    private int hexAt(int i, int end) {
+        return i < end ? Character.digit(raw.charAt(i), 16) : -1;
+    }
+}
@@ -0,0 +1,171 @@
+package app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory cache of successful route output for idempotent GETs, keyed by
+ * route class plus normalized query. Only routes listed in the cache
+ * manifest are cached, each with its own TTL in seconds. Entries carry a
+ * strong ETag over their bytes and are evicted least-recently-used first
+ * once the total size passes {@code maxBytes}.
+ */
+public class ResponseCache {
+
+    /**
+     * Immutable cached response, plus a gzip of it made on first demand.
+     */
+    public static final class Entry {
+        public final byte[] body;
+        public final String etag;
+        public final long expiresAtMs;
+        private volatile byte[] gzip; // not counted against maxBytes
+
+        Entry(byte[] body, String etag, long expiresAtMs) {
+            this.body = body;
+            this.etag = etag;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        /** Seconds left before expiry, for {@code Cache-Control: max-age}. */
+        public long maxAgeSeconds() {
+            return Math.max(0, (expiresAtMs - System.currentTimeMillis()) / 1000);
+        }
+
+        /** {@link #body} gzipped by {@code encoder} the first time it is asked for; two racing callers both encode. */
+        public byte[] gzip(UnaryOperator<byte[]> encoder) {
+            byte[] g = gzip;
+            if (g == null) gzip = g = encoder.apply(body);
+            return g;
+        }
+    }
+
+    private final long maxBytes;
+    private final Map<String, Integer> ttls;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+
+    public ResponseCache(long maxBytes, Map<String, Integer> ttls) {
+        this.maxBytes = maxBytes;
+        this.ttls = Map.copyOf(ttls);
+    }
+
+    public static ResponseCache disabled() {
+        return new ResponseCache(0, Map.of());
+    }
+
+    /**
+     * Reads a manifest of {@code <route class>=<ttl seconds>} lines. A missing
+     * file yields an empty manifest, i.e. nothing is cached.
+     */
+    public static Map<String, Integer> loadManifest(Path file) throws IOException {
+        Map<String, Integer> ttls = new HashMap<>();
+        if (!Files.isRegularFile(file)) return ttls;
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(r);
+        }
+        for (String cls : p.stringPropertyNames()) {
+            try {
+                ttls.put(cls, Integer.parseInt(p.getProperty(cls).trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("ResponseCache: ignoring " + cls + "=" + p.getProperty(cls) + " in " + file);
+            }
+        }
+        return ttls;
+    }
+
+    /** TTL in seconds declared for {@code className}; 0 means not cacheable. */
+    public int ttlSeconds(String className) {
+        return maxBytes <= 0 ? 0 : ttls.getOrDefault(className, 0);
+    }
+
+    public static String key(String className, String rawQuery) {
+        return className + "?" + normalizeQuery(rawQuery);
+    }
+
+    public Entry get(String key) {
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e == null) return null;
+            if (e.expiresAtMs <= System.currentTimeMillis()) {
+                remove(key);
+                return null;
+            }
+            return e;
+        }
+    }
+
+    public Entry put(String key, byte[] body, int ttlSeconds) {
+        Entry e = new Entry(body, etag(body), System.currentTimeMillis() + ttlSeconds * 1000L);
+        if (body.length > maxBytes) return e; // still hand back an ETag, just do not keep it
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, e);
+            bytes += body.length;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().getValue().body.length;
+                it.remove();
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header value matches {@code etag},
+     * using the weak comparison RFC 9110 prescribes for that header.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*")) return true;
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // ---- helpers ----
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.body.length;
+    }
+
+    // Sorts pairs by key (keeping the order of repeated keys) so a=1&b=2 and b=2&a=1 share an entry.
+    static String normalizeQuery(String raw) {
+        if (raw == null || raw.isEmpty()) return "";
+        List<String> pairs = new ArrayList<>();
+        for (String pair : raw.split("&")) if (!pair.isEmpty()) pairs.add(pair);
+        pairs.sort((a, b) -> {
+            int ia = a.indexOf('='), ib = b.indexOf('=');
+            return (ia < 0 ? a : a.substring(0, ia)).compareTo(ib < 0 ? b : b.substring(0, ib));
+        });
+        return String.join("&", pairs);
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) sb.append(Character.forDigit((d[i] >> 4) & 0xf, 16)).append(Character.forDigit(d[i] & 0xf, 16));
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
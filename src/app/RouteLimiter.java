@@ -0,0 +1,83 @@
+package app;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-route concurrency limits. Each route class gets its own semaphore
+ * (the default limit unless overridden); callers wait at most
+ * {@code maxWaitMs} for a permit and are turned away after that. A limit of
+ * {@code 0} or less means unlimited. Semaphores only exist while a route has
+ * callers, so arbitrary class names from crawler URLs do not accumulate.
+ */
+public class RouteLimiter {
+
+    private static final class Slot {
+        final Semaphore permits;
+        int users = 0;
+
+        Slot(int limit) {
+            this.permits = new Semaphore(limit, true);
+        }
+    }
+
+    private final int defaultLimit;
+    private final Map<String, Integer> overrides;
+    private final long maxWaitMs;
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    public RouteLimiter(int defaultLimit, Map<String, Integer> overrides, long maxWaitMs) {
+        this.defaultLimit = defaultLimit;
+        this.overrides = Map.copyOf(overrides);
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public static RouteLimiter unlimited() {
+        return new RouteLimiter(0, Map.of(), 0);
+    }
+
+    /**
+     * Waits up to the configured time for a permit for {@code className}.
+     * Every {@code true} result must be paired with {@link #release(String)}.
+     */
+    public boolean tryAcquire(String className) throws InterruptedException {
+        int limit = limitFor(className);
+        if (limit <= 0) return true;
+        Slot s = slots.compute(className, (k, cur) -> {
+            Slot slot = cur == null ? new Slot(limit) : cur;
+            slot.users++;
+            return slot;
+        });
+        boolean ok = false;
+        try {
+            ok = s.permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+            return ok;
+        } finally {
+            if (!ok) unref(className);
+        }
+    }
+
+    public void release(String className) {
+        if (limitFor(className) <= 0) return;
+        Slot s = slots.get(className);
+        if (s == null) return;
+        s.permits.release();
+        unref(className);
+    }
+
+    public int limitFor(String className) {
+        return overrides.getOrDefault(className, defaultLimit);
+    }
+
+    /** Seconds a rejected client should wait before retrying. */
+    public long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMs));
+    }
+
+    private void unref(String className) {
+        slots.computeIfPresent(className, (k, s) -> --s.users == 0 ? null : s);
+    }
+}
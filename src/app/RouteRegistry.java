@@ -0,0 +1,112 @@
+package app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The route classes present under {@code build/routes}, so the HTTP adapter
+ * can turn away unknown paths before any process is spawned. The set is
+ * rebuilt by {@link #refresh()} at startup and after every background
+ * compile. A name outside the set costs one file check; a miss is then
+ * remembered for {@link #NEGATIVE_TTL_MS} (up to {@link #MAX_NEGATIVE}
+ * names), so a crawler probing random URLs touches the disk at most once per
+ * name and window. Classes compiled behind the host's back still show up once
+ * that window has passed.
+ */
+public class RouteRegistry {
+    static final long NEGATIVE_TTL_MS = 5_000;
+    static final int MAX_NEGATIVE = 4096;
+
+    private final Path classRoot;
+    private volatile Set<String> known = Set.of();
+    private final LinkedHashMap<String, Long> missing = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_NEGATIVE;
+        }
+    };
+
+    public RouteRegistry(Path classRoot) {
+        this.classRoot = classRoot;
+    }
+
+    /** A registry over {@code classRoot} that has already been scanned once. */
+    public static RouteRegistry scan(Path classRoot) {
+        RouteRegistry r = new RouteRegistry(classRoot);
+        r.refresh();
+        return r;
+    }
+
+    /** Rescans {@code <classRoot>/routes} and forgets every remembered miss. */
+    public void refresh() {
+        Set<String> found = new HashSet<>();
+        Path dir = classRoot.resolve("routes");
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> s = Files.walk(dir)) {
+                for (Path p : (Iterable<Path>) s::iterator) {
+                    String rel = classRoot.relativize(p).toString().replace('\\', '/');
+                    if (!rel.endsWith(".class") || rel.indexOf('$') >= 0) continue;
+                    found.add(rel.substring(0, rel.length() - ".class".length()).replace('/', '.'));
+                }
+            } catch (IOException e) {
+                System.err.println("RouteRegistry: scanning " + dir + " failed: " + e);
+            }
+        }
+        synchronized (missing) {
+            known = Set.copyOf(found);
+            missing.clear();
+        }
+    }
+
+    /** Whether {@code className} names a top-level class under the class root. */
+    public boolean exists(String className) {
+        if (known.contains(className)) return true;
+        if (!isClassName(className)) return false;
+        long now = System.currentTimeMillis();
+        synchronized (missing) {
+            Long until = missing.get(className);
+            if (until != null && until > now) return false;
+        }
+        boolean found = Files.isRegularFile(classRoot.resolve(className.replace('.', '/') + ".class"));
+        synchronized (missing) {
+            if (found) {
+                Set<String> s = new HashSet<>(known);
+                s.add(className);
+                known = Set.copyOf(s);
+                missing.remove(className);
+            } else {
+                missing.put(className, now + NEGATIVE_TTL_MS);
+            }
+        }
+        return found;
+    }
+
+    public int size() {
+        return known.size();
+    }
+
+    // ---- helpers ----
+    // Dotted Java identifiers without '$'; anything else could not be a route and must not reach the filesystem.
+    private static boolean isClassName(String s) {
+        if (s == null || s.isEmpty()) return false;
+        boolean segmentStart = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (segmentStart) return false;
+                segmentStart = true;
+            } else if (c == '$' || !(segmentStart ? Character.isJavaIdentifierStart(c) : Character.isJavaIdentifierPart(c))) {
+                return false;
+            } else {
+                segmentStart = false;
+            }
+        }
+        return !segmentStart;
+    }
+}
@@ -0,0 +1,77 @@
+package app;
+
+import ports.RouteExecutorPort.ExecResult;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent sync calls: while one call for a given
+ * route class and query is running, later identical callers wait for its
+ * {@link ExecResult} instead of starting their own route process. Only
+ * routes in the opt-in set take part; results are never kept once the
+ * leading call returns.
+ */
+public class SingleFlight {
+    private final Set<String> routes;
+    private final ConcurrentMap<String, CompletableFuture<ExecResult>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> executed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> absorbed = new ConcurrentHashMap<>();
+
+    public SingleFlight(Set<String> routes) {
+        this.routes = Set.copyOf(routes);
+    }
+
+    public boolean covers(String className) {
+        return routes.contains(className);
+    }
+
+    public ExecResult run(String className, String query, Supplier<ExecResult> call) {
+        if (!covers(className)) return call.get();
+        String key = ResponseCache.key(className, query);
+        CompletableFuture<ExecResult> mine = new CompletableFuture<>();
+        CompletableFuture<ExecResult> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            counter(absorbed, className).increment();
+            return leader.join();
+        }
+        counter(executed, className).increment();
+        try {
+            ExecResult r = call.get();
+            mine.complete(r);
+            return r;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Per-route number of calls that actually ran the route. */
+    public Map<String, Long> executedCounts() {
+        return snapshot(executed);
+    }
+
+    /** Per-route number of calls that were answered by another caller's run. */
+    public Map<String, Long> absorbedCounts() {
+        return snapshot(absorbed);
+    }
+
+    // ---- helpers ----
+    private static LongAdder counter(ConcurrentMap<String, LongAdder> m, String className) {
+        return m.computeIfAbsent(className, k -> new LongAdder());
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentMap<String, LongAdder> m) {
+        Map<String, Long> out = new TreeMap<>();
+        m.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+}
@@ -4,21 +4,35 @@ import java.nio.file.Path;
 import java.util.UUID;
 
 public class Job {
-    public final String id = UUID.randomUUID().toString();
+    public final String id;
     public final String sid;
     public final String className;
-    public final String query;       // augmented Q (includes __post, maybe __sid)
+    public final String query;       // augmented Q (includes __sid, maybe __post for spooled bodies)
+    public final byte[] body;        // request body piped to the route's stdin; empty if none
     public final Path stdoutPath;
     public final Path stderrPath;
 
     public volatile JobState state = JobState.QUEUED;
+    public volatile JobPriority priority = JobPriority.NORMAL;
+    public volatile long queuedMs = System.currentTimeMillis();
+    public volatile long timeoutMs = 0;       // 0 = no limit
     public volatile int exit = -1;
     public volatile long startMs = 0;
     public volatile long endMs = 0;
 
     public Job(String className, String query, String sid) {
+        this(UUID.randomUUID().toString(), className, query, sid, null);
+    }
+
+    public Job(String className, String query, String sid, byte[] body) {
+        this(UUID.randomUUID().toString(), className, query, sid, body);
+    }
+
+    public Job(String id, String className, String query, String sid, byte[] body) {
+        this.id = id;
         this.className = className;
         this.query = query;
+        this.body = body == null ? new byte[0] : body;
         this.sid = sid == null ? "" : sid;
         this.stdoutPath = Path.of("build/jobs", id + ".out");
         this.stderrPath = Path.of("build/jobs", id + ".err");
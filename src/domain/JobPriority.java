@@ -0,0 +1,2 @@
+package domain;
+public enum JobPriority { HIGH, NORMAL, LOW }
@@ -1,2 +1,7 @@
 package domain;
-public enum JobState { QUEUED, RUNNING, DONE }
+public enum JobState {
+    QUEUED, RUNNING, DONE, CANCELLED, TIMED_OUT;
+
+    /** True once the job will not change state again. */
+    public boolean isFinal() { return ordinal() >= DONE.ordinal(); }
+}
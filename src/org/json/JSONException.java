@@ -0,0 +1,16 @@
+package org.json;
+
+/**
+ * Malformed JSON, or a value read as the wrong type. Carries the character
+ * offset in the input where the problem was found.
+ */
+public class JSONException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public final long offset;
+
+    public JSONException(String message, long offset) {
+        super(message + " at offset " + offset);
+        this.offset = offset;
+    }
+}
@@ -1,15 +1,25 @@
 package org.json;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Minimal JSONObject implementation used for building JSON output
  * without depending on external libraries. Supports storing strings,
- * numbers, booleans, maps and nested JSONObjects.
+ * numbers, booleans, maps, iterables, arrays (including primitive ones)
+ * and nested JSONObjects.
+ *
+ * <p>Output is produced in a single pass into an {@link Appendable} or
+ * {@link OutputStream}, so a route can print a large payload straight to
+ * {@code System.out} without building it as a String first.
  */
 public class JSONObject {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     private final Map<String, Object> values = new LinkedHashMap<>();
 
     public JSONObject put(String key, Object value) {
@@ -17,82 +27,198 @@ public class JSONObject {
         return this;
     }
 
+    /** Writes this object as JSON to {@code out}. */
+    public void writeTo(Appendable out) throws IOException {
+        writeObject(values, out);
+    }
+
+    /** Writes this object as UTF-8 JSON to {@code out} and flushes it; {@code out} is left open. */
+    public void writeTo(OutputStream out) throws IOException {
+        Utf8Sink sink = new Utf8Sink(out);
+        writeTo(sink);
+        sink.flush();
+    }
+
+    /** Same as {@link #writeTo(OutputStream)}; lets {@code writeTo(System.out)} pick the byte path. */
+    public void writeTo(PrintStream out) throws IOException {
+        writeTo((OutputStream) out);
+    }
+
     @Override
     public String toString() {
-        return toJsonObject(values);
+        StringBuilder sb = new StringBuilder(64);
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
     }
 
-    private String toJson(Object value) {
+    // ---- helpers ----
+    private static void writeValue(Object value, Appendable out) throws IOException {
         if (value == null) {
-            return "null";
-        }
-        if (value instanceof JSONObject) {
-            return value.toString();
-        }
-        if (value instanceof Map<?, ?> map) {
-            return toJsonObject(map);
-        }
-        if (value instanceof Iterable<?> iterable) {
-            StringBuilder sb = new StringBuilder();
-            sb.append('[');
-            Iterator<?> iterator = iterable.iterator();
+            out.append("null");
+        } else if (value instanceof String s) {
+            quote(s, out);
+        } else if (value instanceof JSONObject o) {
+            o.writeTo(out);
+        } else if (value instanceof Map<?, ?> map) {
+            writeObject(map, out);
+        } else if (value instanceof Iterable<?> iterable) {
+            out.append('[');
             boolean first = true;
-            while (iterator.hasNext()) {
-                if (!first) {
-                    sb.append(',');
-                }
-                sb.append(toJson(iterator.next()));
+            for (Object item : iterable) {
+                if (!first) out.append(',');
+                writeValue(item, out);
                 first = false;
             }
-            sb.append(']');
-            return sb.toString();
+            out.append(']');
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(String.valueOf(value));
+        } else if (value.getClass().isArray()) {
+            writeArray(value, out);
+        } else {
+            quote(String.valueOf(value), out);
         }
-        if (value instanceof Number || value instanceof Boolean) {
-            return String.valueOf(value);
-        }
-        return quote(String.valueOf(value));
     }
 
-    private String toJsonObject(Map<?, ?> map) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('{');
+    private static void writeObject(Map<?, ?> map, Appendable out) throws IOException {
+        out.append('{');
         boolean first = true;
         for (Map.Entry<?, ?> entry : map.entrySet()) {
-            if (!first) {
-                sb.append(',');
-            }
-            sb.append(quote(String.valueOf(entry.getKey())));
-            sb.append(':');
-            sb.append(toJson(entry.getValue()));
+            if (!first) out.append(',');
+            quote(String.valueOf(entry.getKey()), out);
+            out.append(':');
+            writeValue(entry.getValue(), out);
             first = false;
         }
-        sb.append('}');
-        return sb.toString();
+        out.append('}');
+    }
+
+    // One branch per primitive component type so elements are never boxed.
+    private static void writeArray(Object array, Appendable out) throws IOException {
+        out.append('[');
+        if (array instanceof int[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(Integer.toString(a[i])); }
+        } else if (array instanceof long[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(Long.toString(a[i])); }
+        } else if (array instanceof double[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(Double.toString(a[i])); }
+        } else if (array instanceof float[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(Float.toString(a[i])); }
+        } else if (array instanceof short[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(Short.toString(a[i])); }
+        } else if (array instanceof byte[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(Byte.toString(a[i])); }
+        } else if (array instanceof boolean[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); out.append(a[i] ? "true" : "false"); }
+        } else if (array instanceof char[] a) {
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); quote(String.valueOf(a[i]), out); }
+        } else {
+            Object[] a = (Object[]) array;
+            for (int i = 0; i < a.length; i++) { if (i > 0) out.append(','); writeValue(a[i], out); }
+        }
+        out.append(']');
     }
 
-    private String quote(String s) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('"');
-        for (int i = 0; i < s.length(); i++) {
+    // Copies runs of plain characters in one append; only escapes are written char by char.
+    private static void quote(String s, Appendable out) throws IOException {
+        out.append('"');
+        int start = 0;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
             char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != 0x7f) continue;
+            if (i > start) out.append(s, start, i);
+            start = i + 1;
             switch (c) {
-                case '\\' -> sb.append("\\\\");
-                case '"' -> sb.append("\\\"");
-                case '\b' -> sb.append("\\b");
-                case '\f' -> sb.append("\\f");
-                case '\n' -> sb.append("\\n");
-                case '\r' -> sb.append("\\r");
-                case '\t' -> sb.append("\\t");
-                default -> {
-                    if (c < 0x20 || c == 0x7f) {
-                        sb.append(String.format("\\u%04x", (int) c));
-                    } else {
-                        sb.append(c);
-                    }
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            }
+        }
+        if (start < len) out.append(s, start, len);
+        out.append('"');
+    }
+
+    /**
+     * Unsynchronized UTF-8 encoder into an 8 KiB buffer; unlike an
+     * OutputStreamWriter it takes no lock and makes no call into a
+     * CharsetEncoder per append.
+     */
+    private static final class Utf8Sink implements Appendable {
+        private final OutputStream out;
+        private final byte[] buf = new byte[8192];
+        private int n = 0;
+        private char highSurrogate = 0;
+
+        Utf8Sink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence s) throws IOException {
+            return append(s, 0, s.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence s, int start, int end) throws IOException {
+            for (int i = start; i < end; i++) append(s.charAt(i));
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if (n > buf.length - 4) drain();
+            if (highSurrogate != 0) {
+                char hi = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int cp = Character.toCodePoint(hi, c);
+                    buf[n++] = (byte) (0xf0 | (cp >> 18));
+                    buf[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[n++] = (byte) (0x80 | (cp & 0x3f));
+                    return this;
                 }
+                buf[n++] = '?'; // lone high surrogate
+                if (n > buf.length - 4) drain();
+            }
+            if (c < 0x80) {
+                buf[n++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[n++] = (byte) (0xc0 | (c >> 6));
+                buf[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buf[n++] = '?'; // lone low surrogate
+            } else {
+                buf[n++] = (byte) (0xe0 | (c >> 12));
+                buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[n++] = (byte) (0x80 | (c & 0x3f));
             }
+            return this;
+        }
+
+        void flush() throws IOException {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                append('?');
+            }
+            drain();
+            out.flush();
+        }
+
+        private void drain() throws IOException {
+            if (n > 0) out.write(buf, 0, n);
+            n = 0;
         }
-        sb.append('"');
-        return sb.toString();
     }
 }
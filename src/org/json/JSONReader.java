@@ -0,0 +1,358 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming pull parser for a single JSON document. Input is read through a
+ * fixed 8 KiB buffer, so a route can walk a large POST body from
+ * {@code System.in} one token at a time without loading it whole:
+ *
+ * <pre>
+ * JSONReader r = new JSONReader(System.in);
+ * r.expect(JSONReader.Token.BEGIN_OBJECT);
+ * while (r.next() == JSONReader.Token.NAME) {
+ *     if (r.text().equals("items")) { ... } else r.skipValue();
+ * }
+ * </pre>
+ *
+ * Syntax errors throw {@link JSONException}. An empty document yields
+ * {@link Token#END} straight away.
+ */
+public class JSONReader implements AutoCloseable {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    private static final byte EMPTY_DOC = 0, NONEMPTY_DOC = 1, EMPTY_OBJECT = 2, DANGLING_NAME = 3,
+            NONEMPTY_OBJECT = 4, EMPTY_ARRAY = 5, NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private long consumed = 0;   // chars dropped from the buffer before buf[0]
+
+    private byte[] scopes = new byte[32];
+    private int depth = 1;
+
+    private final StringBuilder text = new StringBuilder();
+    private Token token;
+
+    public JSONReader(Reader in) {
+        this.in = in;
+        scopes[0] = EMPTY_DOC;
+    }
+
+    /** Reads UTF-8 from {@code in}. */
+    public JSONReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /** Advances to the next token. */
+    public Token next() throws IOException {
+        int c = nextNonWhitespace();
+        switch (scopes[depth - 1]) {
+            case EMPTY_DOC -> scopes[depth - 1] = NONEMPTY_DOC;
+            case NONEMPTY_DOC -> {
+                if (c != -1) throw syntax("Unexpected data after the document");
+                return token = Token.END;
+            }
+            case EMPTY_ARRAY -> {
+                scopes[depth - 1] = NONEMPTY_ARRAY;
+                if (c == ']') { depth--; return token = Token.END_ARRAY; }
+            }
+            case NONEMPTY_ARRAY -> {
+                if (c == ']') { depth--; return token = Token.END_ARRAY; }
+                if (c != ',') throw syntax("Expected ',' or ']'");
+                c = nextNonWhitespace();
+            }
+            case DANGLING_NAME -> {
+                if (c != ':') throw syntax("Expected ':'");
+                scopes[depth - 1] = NONEMPTY_OBJECT;
+                c = nextNonWhitespace();
+            }
+            default -> { // EMPTY_OBJECT, NONEMPTY_OBJECT
+                if (c == '}') { depth--; return token = Token.END_OBJECT; }
+                if (scopes[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') throw syntax("Expected ',' or '}'");
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw syntax("Expected a quoted name");
+                readString();
+                scopes[depth - 1] = DANGLING_NAME;
+                return token = Token.NAME;
+            }
+        }
+        return token = readValueToken(c);
+    }
+
+    /** Advances and fails unless the next token is {@code expected}. */
+    public void expect(Token expected) throws IOException {
+        Token t = next();
+        if (t != expected) throw syntax("Expected " + expected + " but found " + t);
+    }
+
+    /** The token {@link #next} last returned, or null before the first call. */
+    public Token token() {
+        return token;
+    }
+
+    /**
+     * Text of the current NAME, STRING or NUMBER token. The builder is reused
+     * by the next call to {@link #next}; copy it if it has to outlive that.
+     */
+    public CharSequence textView() {
+        return text;
+    }
+
+    /** Text of the current NAME, STRING or NUMBER token as a String. */
+    public String text() {
+        return text.toString();
+    }
+
+    public long longValue() {
+        requireNumber();
+        try {
+            return Long.parseLong(text, 0, text.length(), 10);
+        } catch (NumberFormatException e) {
+            throw syntax("Not a long: " + text);
+        }
+    }
+
+    public double doubleValue() {
+        requireNumber();
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw syntax("Not a number: " + text);
+        }
+    }
+
+    public boolean booleanValue() {
+        if (token != Token.TRUE && token != Token.FALSE) throw syntax("Expected a boolean but found " + token);
+        return token == Token.TRUE;
+    }
+
+    /**
+     * Skips the value belonging to the current token: the rest of an object
+     * or array after BEGIN_*, or the value following a NAME. Does nothing for
+     * scalar tokens, which are already complete.
+     */
+    public void skipValue() throws IOException {
+        if (token == Token.NAME) {
+            Token t = next();
+            if (t != Token.BEGIN_OBJECT && t != Token.BEGIN_ARRAY) return;
+        } else if (token != Token.BEGIN_OBJECT && token != Token.BEGIN_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        while (depth > target) {
+            if (next() == Token.END) throw syntax("Unexpected end of input");
+        }
+    }
+
+    /**
+     * Reads the next value whole: objects become {@link LinkedHashMap}s, arrays
+     * {@link ArrayList}s, numbers {@link Long} or {@link Double}. Handy for
+     * small sub-trees of an otherwise streamed document; the results can be
+     * handed straight to {@link JSONObject#put}.
+     */
+    public Object readValue() throws IOException {
+        return valueOf(next());
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ---- helpers ----
+    private Object valueOf(Token t) throws IOException {
+        switch (t) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> m = new LinkedHashMap<>();
+                while (next() == Token.NAME) {
+                    String key = text();
+                    m.put(key, valueOf(next()));
+                }
+                return m;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> l = new ArrayList<>();
+                Token item;
+                while ((item = next()) != Token.END_ARRAY) l.add(valueOf(item));
+                return l;
+            }
+            case STRING -> { return text(); }
+            case NUMBER -> {
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '.' || c == 'e' || c == 'E') return doubleValue();
+                }
+                try {
+                    return Long.parseLong(text, 0, text.length(), 10);
+                } catch (NumberFormatException e) {
+                    return doubleValue(); // too big for a long
+                }
+            }
+            case TRUE -> { return Boolean.TRUE; }
+            case FALSE -> { return Boolean.FALSE; }
+            case NULL -> { return null; }
+            default -> throw syntax("Expected a value but found " + t);
+        }
+    }
+
+    private Token readValueToken(int c) throws IOException {
+        switch (c) {
+            case '{' -> { push(EMPTY_OBJECT); return Token.BEGIN_OBJECT; }
+            case '[' -> { push(EMPTY_ARRAY); return Token.BEGIN_ARRAY; }
+            case '"' -> { readString(); return Token.STRING; }
+            case 't' -> { literal("rue"); return Token.TRUE; }
+            case 'f' -> { literal("alse"); return Token.FALSE; }
+            case 'n' -> { literal("ull"); return Token.NULL; }
+            case -1 -> {
+                if (depth == 1) return Token.END; // empty document
+                throw syntax("Unexpected end of input");
+            }
+            default -> {
+                if (c == '-' || (c >= '0' && c <= '9')) { readNumber(c); return Token.NUMBER; }
+                throw syntax("Unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void requireNumber() {
+        if (token != Token.NUMBER) throw syntax("Expected a number but found " + token);
+    }
+
+    private void push(byte scope) {
+        if (depth == scopes.length) scopes = Arrays.copyOf(scopes, depth * 2);
+        scopes[depth++] = scope;
+    }
+
+    // Copies runs between escapes straight out of the buffer.
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '"' || c == '\\' || c < 0x20) break;
+                pos++;
+            }
+            text.append(buf, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) throw syntax("Unterminated string");
+                continue;
+            }
+            char c = buf[pos++];
+            if (c == '"') return;
+            if (c < 0x20) throw syntax("Unescaped control character in string");
+            int e = read();
+            switch (e) {
+                case '"', '\\', '/' -> text.append((char) e);
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'u' -> {
+                    int v = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int d = Character.digit(read(), 16);
+                        if (d < 0) throw syntax("Bad \\u escape");
+                        v = (v << 4) | d;
+                    }
+                    text.append((char) v);
+                }
+                default -> throw syntax("Bad escape");
+            }
+        }
+    }
+
+    // Accepts the JSON number grammar only: -?(0|[1-9]\d*)(\.\d+)?([eE][+-]?\d+)?
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        int c = first;
+        if (c == '-') { text.append('-'); c = read(); }
+        if (c == '0') {
+            text.append('0');
+            c = peek();
+        } else if (c >= '1' && c <= '9') {
+            text.append((char) c);
+            digits();
+            c = peek();
+        } else {
+            throw syntax("Bad number");
+        }
+        if (c == '.') {
+            text.append((char) read());
+            if (digits() == 0) throw syntax("Bad number");
+            c = peek();
+        }
+        if (c == 'e' || c == 'E') {
+            text.append((char) read());
+            c = peek();
+            if (c == '+' || c == '-') text.append((char) read());
+            if (digits() == 0) throw syntax("Bad number");
+        }
+    }
+
+    private int digits() throws IOException {
+        int n = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            text.append((char) c);
+            pos++;
+            n++;
+        }
+        return n;
+    }
+
+    private void literal(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) throw syntax("Bad literal");
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n < 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private JSONException syntax(String message) {
+        return new JSONException(message, consumed + pos);
+    }
+}
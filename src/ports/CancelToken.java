@@ -0,0 +1,47 @@
+package ports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-shot cancellation signal handed to a running route. Executors register
+ * hooks that stop whatever they started (kill a process tree, abandon a
+ * thread); {@link #cancel()} runs them once, and a hook registered after
+ * cancellation runs immediately.
+ */
+public final class CancelToken {
+    /** A token that is never cancelled. */
+    public static final CancelToken NONE = new CancelToken();
+
+    private final List<Runnable> hooks = new ArrayList<>();
+    private boolean cancelled;
+
+    public void onCancel(Runnable hook) {
+        if (this == NONE) return;
+        synchronized (this) {
+            if (!cancelled) {
+                hooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    /** Returns false when the token was already cancelled. */
+    public boolean cancel() {
+        if (this == NONE) return false;
+        List<Runnable> run;
+        synchronized (this) {
+            if (cancelled) return false;
+            cancelled = true;
+            run = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        for (Runnable h : run) h.run();
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
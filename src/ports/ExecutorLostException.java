@@ -0,0 +1,16 @@
+package ports;
+
+import java.io.IOException;
+
+/**
+ * The executor lost a route through no fault of the route, e.g. the remote
+ * node running it went away. Nothing is known about how far the route got,
+ * so the caller may run it again elsewhere.
+ */
+public class ExecutorLostException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ExecutorLostException(String message) {
+        super(message);
+    }
+}
@@ -1,15 +1,90 @@
 package ports;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 public interface RouteExecutorPort {
     // Run a route synchronously, return [exit, stdout, stderr]
     ExecResult execOnce(String className, String query);
 
+    // Same, with `stdin` (the request body, may be empty) piped to the route's System.in.
+    // Executors that cannot deliver a body fall back to execOnce and drop it.
+    default ExecResult execOnce(String className, String query, byte[] stdin) {
+        return execOnce(className, query);
+    }
+
+    // Run a route, forwarding stdout to the stream opened by `stdout` as it is produced.
+    // `stdout` is opened on the first byte only, so a route that prints nothing leaves the
+    // caller free to pick its own status code. Stderr comes back buffered (spilling to disk).
+    default StreamResult execStreaming(String className, String query, byte[] stdin,
+                                       OutputOpener stdout) throws IOException {
+        return execStreaming(className, query, stdin, stdout, CancelToken.NONE);
+    }
+
+    // Same, stopping the route (and anything it spawned) as soon as `cancel` fires.
+    // The default buffers the whole run via execOnce, hands stdout over once the route
+    // has ended (see OutputOpener.openAfter), and cannot stop the route early.
+    default StreamResult execStreaming(String className, String query, byte[] stdin,
+                                       OutputOpener stdout, CancelToken cancel) throws IOException {
+        return buffered(execOnce(className, query, stdin), stdout);
+    }
+
+    // Forwards the stdout of a run that has already ended, for executors that buffer it.
+    static StreamResult buffered(ExecResult r, OutputOpener stdout) throws IOException {
+        if (!r.stdout.isEmpty()) {
+            OutputStream os = stdout.openAfter(r.exit);
+            if (os != null) {
+                os.write(r.stdout.getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+        }
+        return new StreamResult(r.exit, SpillBuffer.of(r.stderr), r.spawnNanos);
+    }
+
+    // Whether a failed route's stderr says its class does not exist (the `java` launcher's wording,
+    // which the in-JVM executors reproduce).
+    static boolean missingClass(String stderrHead) {
+        return stderrHead.contains("Could not find or load main class");
+    }
+
+    @FunctionalInterface
+    interface OutputOpener {
+        OutputStream open() throws IOException;
+
+        // Opens for stdout a buffering executor hands over after the route ended with `exit`;
+        // null drops it. Job files keep everything, while the HTTP path refuses a failed
+        // route's output so its 500 is not committed as a 200.
+        default OutputStream openAfter(int exit) throws IOException {
+            return open();
+        }
+    }
+
+    // spawnNanos: time spent starting a process for this call; 0 when none was started.
     final class ExecResult {
         public final int exit;
         public final String stdout;
         public final String stderr;
+        public final long spawnNanos;
         public ExecResult(int exit, String stdout, String stderr) {
-            this.exit = exit; this.stdout = stdout; this.stderr = stderr;
+            this(exit, stdout, stderr, 0);
+        }
+        public ExecResult(int exit, String stdout, String stderr, long spawnNanos) {
+            this.exit = exit; this.stdout = stdout; this.stderr = stderr; this.spawnNanos = spawnNanos;
+        }
+    }
+
+    final class StreamResult implements AutoCloseable {
+        public final int exit;
+        public final SpillBuffer stderr;
+        public final long spawnNanos;
+        public StreamResult(int exit, SpillBuffer stderr) {
+            this(exit, stderr, 0);
+        }
+        public StreamResult(int exit, SpillBuffer stderr, long spawnNanos) {
+            this.exit = exit; this.stderr = stderr; this.spawnNanos = spawnNanos;
         }
+        @Override
+        public void close() throws IOException { stderr.close(); }
     }
 }
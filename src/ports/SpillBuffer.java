@@ -0,0 +1,106 @@
+package ports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output buffer that keeps the first {@code memoryLimit} bytes on the heap
+ * and spills everything after that to a temp file. Used for route stderr so
+ * a huge error payload costs disk, not heap. {@link #close()} deletes the
+ * spill file.
+ */
+public final class SpillBuffer extends OutputStream {
+    public static final int DEFAULT_MEMORY_LIMIT = 64 * 1024;
+
+    private final int memoryLimit;
+    private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+    private Path spillPath;
+    private OutputStream spill;
+    private long size = 0;
+
+    public SpillBuffer() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    public SpillBuffer(int memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public static SpillBuffer of(String s) {
+        SpillBuffer b = new SpillBuffer(Integer.MAX_VALUE);
+        byte[] bytes = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        b.head.write(bytes, 0, bytes.length);
+        b.size = bytes.length;
+        return b;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        int inMem = Math.min(len, Math.max(0, memoryLimit - head.size()));
+        head.write(b, off, inMem);
+        if (inMem < len) {
+            if (spill == null) {
+                spillPath = Files.createTempFile("cgiplus-", ".spill");
+                spill = Files.newOutputStream(spillPath);
+            }
+            spill.write(b, off + inMem, len - inMem);
+        }
+        size += len;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (spill != null) spill.flush();
+    }
+
+    /** Total number of bytes written, in memory and on disk. */
+    public synchronized long size() {
+        return size;
+    }
+
+    /** Decodes at most the in-memory head; enough for matching launcher errors. */
+    public synchronized String head() {
+        return head.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Copies every byte written so far to {@code out}. */
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        head.writeTo(out);
+        if (spill == null) return;
+        spill.flush();
+        try (InputStream in = Files.newInputStream(spillPath)) {
+            in.transferTo(out);
+        }
+    }
+
+    /** Reads the whole buffer back as UTF-8; only for payloads known to be small. */
+    @Override
+    public synchronized String toString() {
+        if (spill == null) return head();
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        try {
+            writeTo(all);
+        } catch (IOException e) {
+            return head();
+        }
+        return all.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill == null) return;
+        spill.close();
+        Files.deleteIfExists(spillPath);
+        spill = null;
+    }
+}
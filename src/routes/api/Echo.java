@@ -1,51 +1,53 @@
 package routes.api;
 
+import app.QueryParams;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Echo {
-    // argv[0] is the raw query string, augmented with __post=<file> (and maybe __sid for async start)
+    // argv[0] is the raw query string (maybe with __sid for async start). The request body arrives
+    // on stdin, or as __post=<file> when the host spooled a large body to disk.
     public static void main(String[] args) throws Exception {
         String rawQ = args.length > 0 ? args[0] : "";
-        Map<String, String> qs = parseQuery(rawQ);
+        QueryParams qs = QueryParams.parse(rawQ);
 
-        String postPath = qs.getOrDefault("__post", "build/post_body.txt");
-        String postBody = readFileSilently(postPath);
+        String postPath = qs.get("__post", "");
+        String postBody = postPath.isEmpty()
+                ? new String(System.in.readAllBytes(), StandardCharsets.UTF_8)
+                : readFileSilently(postPath);
 
         JSONObject out = new JSONObject();
         out.put("route", "Echo");
         out.put("queryRaw", rawQ);
-        out.put("query", qs);
+        out.put("query", queryMap(qs));
         out.put("postPath", postPath);
         out.put("postBodyLength", postBody.length());
         out.put("postBodyPreview", postBody.length() > 256 ? postBody.substring(0, 256) : postBody);
 
-        System.out.println(out.toString());
+        out.writeTo(System.out);
+        System.out.println();
     }
 
     private static String readFileSilently(String path) {
         try { return Files.readString(Path.of(path), StandardCharsets.UTF_8); }
         catch (IOException e) { return ""; }
     }
-    private static Map<String,String> parseQuery(String raw) {
-        Map<String,String> m = new LinkedHashMap<>();
-        if (raw == null || raw.isEmpty()) return m;
-        for (String pair : raw.split("&")) {
-            int i = pair.indexOf('=');
-            String k = i >= 0 ? pair.substring(0, i) : pair;
-            String v = i >= 0 ? pair.substring(i+1) : "";
-            try {
-                k = URLDecoder.decode(k, "UTF-8");
-                v = URLDecoder.decode(v, "UTF-8");
-            } catch (Exception ignored) {}
-            m.put(k, v);
+
+    // Repeated keys (?tag=a&tag=b) come back as arrays, single ones as plain strings.
+    private static Map<String, Object> queryMap(QueryParams qs) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < qs.size(); i++) {
+            String name = qs.name(i);
+            if (m.containsKey(name)) continue;
+            List<String> values = qs.all(name);
+            m.put(name, values.size() == 1 ? values.get(0) : values);
         }
         return m;
     }
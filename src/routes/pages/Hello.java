@@ -1,17 +1,15 @@
 package routes.pages;
 
-import app.QueryUtil;
+import app.QueryParams;
 
 import java.time.Instant;
-import java.util.Map;
 
 public final class Hello {
     private Hello(){}
 
     public static void main(String[] args) {
         String rawQ = args.length > 0 ? args[0] : "";
-        Map<String, String> qs = QueryUtil.parse(rawQ);
-        String name = qs.getOrDefault("name", "friend");
+        String name = QueryParams.parse(rawQ).get("name", "friend");
 
         String body = """
                 <!doctype html>
@@ -13,7 +13,8 @@ import java.util.List;
 /**
  * Minimal command line entry point that exercises the fake adapters added for
  * tests. It enables quick manual verification from the shell without spinning
- * up the full HTTP server or launching real worker processes.
+ * up the full HTTP server or launching real worker processes. The {@code load}
+ * subcommand is the exception: it drives a real server (see {@link LoadGenerator}).
  */
 public final class FakeAdaptersCli {
 
@@ -31,6 +32,7 @@ public final class FakeAdaptersCli {
         switch (subcommand) {
             case "http" -> runHttp(rest);
             case "exec" -> runExec(rest);
+            case "load" -> LoadGenerator.run(rest);
             default -> {
                 System.err.println("Unknown subcommand: " + subcommand);
                 printUsage();
@@ -137,6 +139,10 @@ public final class FakeAdaptersCli {
                 "Subcommands:\n" +
                 "  http [--port <n>] [--fail]   Exercise FakeHttpServerAdapter.start()\n" +
                 "  exec [--enqueue <exit> <stdout> <stderr>]... [--fallback <exit> <stdout> <stderr>] <class> <query>\n" +
-                "                              Run FakeMakeExecutor via JobService.execSync()\n");
+                "                              Run FakeMakeExecutor via JobService.execSync()\n" +
+                "  load [--url <base>] [--serve] [--open <req/s> | --closed <n>] [--concurrency <n>]\n" +
+                "       [--duration <s>] [--warmup <s>] [--mix sync=50,page=20,static=20,job=10]\n" +
+                "       [--sync <path>] [--page <path>] [--static <path>] [--job <start path>]\n" +
+                "                              Drive a real HttpServerAdapter and report p50/p99/p99.9\n");
     }
 }
@@ -0,0 +1,374 @@
+package tools;
+
+import adapters.in.http.HttpServerAdapter;
+import adapters.out.process.JavaExecutor;
+import app.JobService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code fake-adapters load}: drives a real {@link HttpServerAdapter} over
+ * HTTP with a weighted mix of sync API calls, page renders, static files and
+ * job start/poll cycles, then prints throughput and latency percentiles per
+ * kind of request.
+ *
+ * <p>Open loop sends at a fixed rate and measures each request from the time
+ * it <em>should</em> have been sent, so a stalled server shows up as latency
+ * instead of as fewer samples. Closed loop keeps {@code concurrency} requests
+ * in flight; there, a response slower than the expected interval (the
+ * median seen during warmup) is back-filled with the samples the stalled
+ * caller would have produced, as HdrHistogram's
+ * {@code recordValueWithExpectedInterval} does.
+ */
+final class LoadGenerator {
+
+    enum Kind { SYNC, PAGE, STATIC, JOB }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final Pattern JOB_ID = Pattern.compile("\"jobId\":\"([^\"]+)\"");
+    private static final Pattern FINAL_STATE = Pattern.compile("\"state\":\"(DONE|CANCELLED|TIMED_OUT)\"");
+
+    private String base = "http://localhost:8080";
+    private boolean serve = false;
+    private boolean open = false;
+    private double rate = 100;
+    private int concurrency = 16;
+    private long durationMs = 10_000;
+    private long warmupMs = 2_000;
+    private final Map<Kind, Integer> mix = new LinkedHashMap<>(Map.of(Kind.SYNC, 50, Kind.PAGE, 20, Kind.STATIC, 20, Kind.JOB, 10));
+    private final Map<Kind, String> paths = new LinkedHashMap<>(Map.of(
+            Kind.SYNC, "/api/echo?from=load",
+            Kind.PAGE, "/hello?name=load",
+            Kind.STATIC, "/",
+            Kind.JOB, "/api/job/start?name=longDemo&seconds=0"));
+
+    private HttpClient client;
+    private final List<Recorder> recorders = Collections.synchronizedList(new ArrayList<>());
+    private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(() -> {
+        Recorder r = new Recorder();
+        recorders.add(r);
+        return r;
+    });
+    private volatile boolean measuring = false;
+    private volatile long expectedIntervalNs = 0;
+
+    static void run(String[] args) throws Exception {
+        LoadGenerator g = new LoadGenerator();
+        g.parse(args);
+        g.execute();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> base = value(args, ++i, "--url").replaceAll("/+$", "");
+                case "--serve" -> serve = true;
+                case "--open" -> { open = true; rate = Double.parseDouble(value(args, ++i, "--open")); }
+                case "--closed" -> { open = false; concurrency = Integer.parseInt(value(args, ++i, "--closed")); }
+                case "--concurrency" -> concurrency = Integer.parseInt(value(args, ++i, "--concurrency"));
+                case "--duration" -> durationMs = (long) (Double.parseDouble(value(args, ++i, "--duration")) * 1000);
+                case "--warmup" -> warmupMs = (long) (Double.parseDouble(value(args, ++i, "--warmup")) * 1000);
+                case "--mix" -> {
+                    mix.clear();
+                    for (String part : value(args, ++i, "--mix").split(",")) {
+                        String[] kv = part.split("=", 2);
+                        if (kv.length != 2) throw new IllegalArgumentException("--mix expects kind=weight,...");
+                        mix.put(kind(kv[0]), Integer.parseInt(kv[1]));
+                    }
+                }
+                case "--sync", "--page", "--static", "--job" -> paths.put(kind(args[i].substring(2)), value(args, ++i, args[i - 1]));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+    }
+
+    private void execute() throws Exception {
+        if (serve) {
+            int port = URI.create(base).getPort();
+            new HttpServerAdapter(new JobService(new JavaExecutor())).start(port < 0 ? 80 : port);
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        System.out.printf(Locale.ROOT, "%s against %s: %s, warmup %.1fs, duration %.1fs, mix %s%n",
+                open ? "Open loop" : "Closed loop", base,
+                open ? String.format(Locale.ROOT, "%.1f req/s (up to %d in flight)", rate, concurrency)
+                     : concurrency + " in flight",
+                warmupMs / 1000.0, durationMs / 1000.0, mix);
+
+        if (open) runOpen();
+        else runClosed();
+        report();
+        if (serve) System.exit(0); // the embedded server has no stop hook and its threads keep the JVM up
+    }
+
+    // ---- traffic ----
+
+    private void runClosed() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long warmupEnd = System.nanoTime() + warmupMs * 1_000_000L;
+        long end = warmupEnd + durationMs * 1_000_000L;
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    issue(pick(), now);
+                }
+            });
+        }
+        sleepUntil(warmupEnd);
+        expectedIntervalNs = warmupMedianNs();
+        resetAndMeasure();
+        workers.shutdown();
+        workers.awaitTermination(durationMs + 60_000, TimeUnit.MILLISECONDS);
+        measuring = false;
+    }
+
+    private void runOpen() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long intervalNs = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long warmupEnd = start + warmupMs * 1_000_000L;
+        long end = warmupEnd + durationMs * 1_000_000L;
+        boolean switched = false;
+        for (long n = 0; ; n++) {
+            long intended = start + n * intervalNs;
+            if (intended >= end) break;
+            if (!switched && intended >= warmupEnd) {
+                resetAndMeasure();
+                switched = true;
+            }
+            sleepUntil(intended);
+            Kind k = pick();
+            // Latency counts from `intended`: time spent queued behind busy workers is part of it.
+            workers.execute(() -> issue(k, intended));
+        }
+        workers.shutdown();
+        workers.awaitTermination(60, TimeUnit.SECONDS);
+        measuring = false;
+    }
+
+    private void issue(Kind k, long intendedNs) {
+        boolean ok;
+        try {
+            ok = k == Kind.JOB ? jobCycle() : get(paths.get(k)) != null;
+        } catch (IOException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long latency = System.nanoTime() - intendedNs;
+        recorder.get().record(k, latency, ok, measuring && !open ? expectedIntervalNs : 0);
+    }
+
+    // Starts a job and polls its status until it reaches a final state.
+    private boolean jobCycle() throws IOException, InterruptedException {
+        String started = get(paths.get(Kind.JOB));
+        if (started == null) return false;
+        Matcher m = JOB_ID.matcher(started);
+        if (!m.find()) return false;
+        String status = "/api/job/status?id=" + m.group(1);
+        while (true) {
+            String s = get(status);
+            if (s == null) return false;
+            if (FINAL_STATE.matcher(s).find()) return s.contains("\"state\":\"DONE\"") && s.contains("\"exit\":0");
+            Thread.sleep(20);
+        }
+    }
+
+    // Body of a 2xx/304 response, or null for anything else.
+    private String get(String path) throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(60)).GET().build();
+        HttpResponse<String> r = client.send(req, HttpResponse.BodyHandlers.ofString());
+        return (r.statusCode() / 100 == 2 || r.statusCode() == 304) ? r.body() : null;
+    }
+
+    private Kind pick() {
+        int total = 0;
+        for (int w : mix.values()) total += Math.max(0, w);
+        int x = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Kind, Integer> e : mix.entrySet()) {
+            x -= Math.max(0, e.getValue());
+            if (x < 0) return e.getKey();
+        }
+        throw new IllegalStateException("unreachable");
+    }
+
+    // ---- recording ----
+
+    private void resetAndMeasure() {
+        synchronized (recorders) {
+            for (Recorder r : recorders) r.reset();
+        }
+        measuring = true;
+    }
+
+    private long warmupMedianNs() {
+        Histogram all = new Histogram();
+        synchronized (recorders) {
+            for (Recorder r : recorders) for (Histogram h : r.latency) all.add(h);
+        }
+        return all.count == 0 ? 0 : all.percentile(50) * 1000;
+    }
+
+    private void report() {
+        Histogram[] merged = new Histogram[KINDS.length];
+        long[] errors = new long[KINDS.length];
+        for (int i = 0; i < KINDS.length; i++) merged[i] = new Histogram();
+        synchronized (recorders) {
+            for (Recorder r : recorders) {
+                for (int i = 0; i < KINDS.length; i++) {
+                    merged[i].add(r.latency[i]);
+                    errors[i] += r.errors[i];
+                }
+            }
+        }
+        Histogram all = new Histogram();
+        long allErrors = 0;
+        double seconds = durationMs / 1000.0;
+        System.out.printf(Locale.ROOT, "%-8s %9s %8s %10s %10s %10s %10s %10s%n",
+                "kind", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (int i = 0; i < KINDS.length; i++) {
+            if (merged[i].count == 0 && errors[i] == 0) continue;
+            line(KINDS[i].name().toLowerCase(Locale.ROOT), merged[i], errors[i], seconds);
+            all.add(merged[i]);
+            allErrors += errors[i];
+        }
+        line("all", all, allErrors, seconds);
+        if (!open) {
+            System.out.printf(Locale.ROOT, "Coordinated-omission correction: expected interval %.3f ms (warmup median)%s%n",
+                    expectedIntervalNs / 1e6, expectedIntervalNs == 0 ? ", i.e. off; use --warmup > 0" : "");
+        }
+    }
+
+    private static void line(String name, Histogram h, long errors, double seconds) {
+        System.out.printf(Locale.ROOT, "%-8s %9d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                name, h.measured, errors, h.measured / seconds,
+                h.percentile(50) / 1000.0, h.percentile(99) / 1000.0, h.percentile(99.9) / 1000.0, h.max / 1000.0);
+    }
+
+    /** Per-thread samples; merged only after the run, so recording never contends. */
+    private static final class Recorder {
+        final Histogram[] latency = new Histogram[KINDS.length];
+        final long[] errors = new long[KINDS.length];
+
+        Recorder() {
+            for (int i = 0; i < latency.length; i++) latency[i] = new Histogram();
+        }
+
+        // Guarded by the recorder's own monitor only against reset() from the driver thread.
+        synchronized void record(Kind k, long latencyNs, boolean ok, long expectedIntervalNs) {
+            if (!ok) errors[k.ordinal()]++;
+            Histogram h = latency[k.ordinal()];
+            h.record(latencyNs / 1000, true);
+            if (expectedIntervalNs <= 0) return;
+            for (long missed = latencyNs - expectedIntervalNs; missed >= expectedIntervalNs; missed -= expectedIntervalNs) {
+                h.record(missed / 1000, false);
+            }
+        }
+
+        synchronized void reset() {
+            for (Histogram h : latency) h.reset();
+            Arrays.fill(errors, 0);
+        }
+    }
+
+    /**
+     * Log-linear histogram of microsecond values: exact below 128 us, then
+     * 64 buckets per power of two (under 1.6% error).
+     */
+    static final class Histogram {
+        private static final int SUB = 64;
+        final long[] counts = new long[SUB * 64];
+        long count;     // including back-filled samples
+        long measured;  // real responses only
+        long max;
+
+        void record(long micros, boolean real) {
+            long v = Math.max(0, micros);
+            counts[index(v)]++;
+            count++;
+            if (real) measured++;
+            if (v > max) max = v;
+        }
+
+        void add(Histogram o) {
+            for (int i = 0; i < counts.length; i++) counts[i] += o.counts[i];
+            count += o.count;
+            measured += o.measured;
+            max = Math.max(max, o.max);
+        }
+
+        void reset() {
+            Arrays.fill(counts, 0);
+            count = measured = max = 0;
+        }
+
+        long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(p / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) return Math.min(max, upper(i));
+            }
+            return max;
+        }
+
+        static int index(long v) {
+            if (v < 2 * SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - 6;
+            return shift * SUB + (int) (v >>> shift);
+        }
+
+        // Largest value that maps to bucket i.
+        static long upper(int i) {
+            if (i < 2 * SUB) return i;
+            int shift = i / SUB - 1;
+            long top = i - (long) shift * SUB;
+            return ((top + 1) << shift) - 1;
+        }
+    }
+
+    // ---- helpers ----
+
+    private static Kind kind(String s) {
+        try {
+            return Kind.valueOf(s.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown request kind: " + s + " (sync|page|static|job)");
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " requires a value");
+        return args[i];
+    }
+
+    private static void sleepUntil(long deadlineNs) {
+        long left;
+        while ((left = deadlineNs - System.nanoTime()) > 0) LockSupport.parkNanos(left);
+    }
+}